@@ -0,0 +1,29 @@
+/**
+ *
+ */
+package alphabetsoup.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**Runs the benchmarks with the GC profiler, so that the allocation rate (gc.alloc.rate.norm, bytes per call)
+ * is reported along with the time of each benchmark.  Takes the usual JMH command line options, for example
+ * "Quadtree" to run only the Quadtree benchmarks, "-p mapSize=500" to run with one map size,
+ * or "-rf csv -rff results.csv" to save the results.
+ */
+public class BenchmarkMain {
+
+	public static void main(String[] args) throws RunnerException, CommandLineOptionException
+	{
+		Options options = new OptionsBuilder()
+			.parent(new CommandLineOptions(args))
+			.addProfiler(GCProfiler.class)
+			.build();
+		new Runner(options).run();
+	}
+}
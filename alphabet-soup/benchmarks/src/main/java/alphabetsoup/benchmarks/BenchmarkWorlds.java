@@ -0,0 +1,62 @@
+/**
+ *
+ */
+package alphabetsoup.benchmarks;
+
+import java.io.File;
+import java.util.Properties;
+
+import alphabetsoup.framework.SimulationWorld;
+import alphabetsoup.simulators.greedytaskallocation.SimulationWorldGreedyTaskAllocation;
+
+/**BenchmarkWorlds builds the simulations the benchmarks run against, from "kiva.config" with the number of
+ * bucketbots and the size of the map replaced.  The number of buckets is scaled with the area of the map
+ * (one per 1000 square units, which is the density of "kiva.config"), so that the layout always fits.
+ * The configuration is read from the directory given by the system property alphabetsoup.home, which is
+ * the parent directory (where "kiva.config" is when run from the benchmarks directory) by default.
+ */
+public class BenchmarkWorlds {
+
+	public static final String home = System.getProperty("alphabetsoup.home", "..");
+
+	/**Loads the simulation parameters from a configuration file in the alphabetsoup.home directory.
+	 * @param config_file name of the configuration file, such as "kiva.config"
+	 * @return parameters of the simulation, without user interface and with a fixed random seed
+	 */
+	public static Properties loadConfiguration(String config_file)
+	{
+		Properties params = SimulationWorld.loadConfiguration(new File(home, config_file).getPath());
+		params.setProperty("useGUI", "0");
+		params.setProperty("random_seed", "1");
+		params.setProperty("dictionary", new File(home, params.getProperty("dictionary")).getPath());
+		return params;
+	}
+
+	/**Loads the simulation parameters for a benchmark.
+	 * @param num_bucketbots number of bucketbots
+	 * @param map_size width and length of the (square) map
+	 * @return parameters of the simulation, without user interface and with a fixed random seed
+	 */
+	public static Properties loadConfiguration(int num_bucketbots, float map_size)
+	{
+		Properties params = loadConfiguration("kiva.config");
+		params.setProperty("map_width", Float.toString(map_size));
+		params.setProperty("map_length", Float.toString(map_size));
+		params.setProperty("num_bucketbots", Integer.toString(num_bucketbots));
+		params.setProperty("num_buckets", Integer.toString(Math.max(1, (int)(map_size * map_size / 1000))));
+		return params;
+	}
+
+	/**Builds a simulation and runs it long enough for the bucketbots to be spread out and busy with tasks.
+	 * @param num_bucketbots number of bucketbots
+	 * @param map_size width and length of the (square) map
+	 * @param warmup_time simulation time to run before returning
+	 * @return the simulation
+	 */
+	public static SimulationWorldGreedyTaskAllocation createWorld(int num_bucketbots, float map_size, double warmup_time)
+	{
+		SimulationWorldGreedyTaskAllocation sw = new SimulationWorldGreedyTaskAllocation(loadConfiguration(num_bucketbots, map_size));
+		sw.update(warmup_time);
+		return sw;
+	}
+}
@@ -0,0 +1,78 @@
+/**
+ *
+ */
+package alphabetsoup.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import alphabetsoup.framework.Bucketbot;
+import alphabetsoup.framework.MersenneTwisterFast;
+import alphabetsoup.simulators.greedytaskallocation.SimulationWorldGreedyTaskAllocation;
+import alphabetsoup.waypointgraph.BucketbotDriver;
+import alphabetsoup.waypointgraph.Waypoint;
+
+/**Benchmarks the path planning and collision avoidance of BucketbotDriver, on a simulation which has been
+ * warmed up so that the bucketbots are spread over the map, and some are carrying buckets.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BucketbotDriverBenchmark {
+
+	@Param({"10", "100"})
+	public int numBucketbots;
+
+	@Param({"200", "500", "1000"})
+	public float mapSize;
+
+	private static final int numRoutes = 1024;
+
+	private BucketbotDriver bucketbots[];
+	private Waypoint routeStart[], routeEnd[];
+	private int nextBucketbot = 0, nextRoute = 0;
+
+	@Setup(Level.Trial)
+	public void setUp()
+	{
+		SimulationWorldGreedyTaskAllocation sw = BenchmarkWorlds.createWorld(numBucketbots, mapSize, 30.0);
+		Bucketbot robots[] = sw.getRobots();
+		bucketbots = new BucketbotDriver[robots.length];
+		for(int i = 0; i < robots.length; i++) bucketbots[i] = (BucketbotDriver)robots[i];
+
+		//random routes across the whole graph
+		Waypoint waypoints[] = sw.waypointGraph.getWaypoints().toArray(new Waypoint[0]);
+		MersenneTwisterFast rand = new MersenneTwisterFast(1);
+		routeStart = new Waypoint[numRoutes];
+		routeEnd = new Waypoint[numRoutes];
+		for(int i = 0; i < numRoutes; i++)
+		{
+			routeStart[i] = waypoints[rand.nextInt(waypoints.length)];
+			routeEnd[i] = waypoints[rand.nextInt(waypoints.length)];
+		}
+	}
+
+	private BucketbotDriver nextBucketbot()
+	{
+		if(++nextBucketbot >= bucketbots.length) nextBucketbot = 0;
+		return bucketbots[nextBucketbot];
+	}
+
+	@Benchmark
+	public Waypoint getNextWaypointTo()
+	{
+		if(++nextRoute >= numRoutes) nextRoute = 0;
+		return nextBucketbot().getNextWaypointTo(routeStart[nextRoute], routeEnd[nextRoute]);
+	}
+
+	@Benchmark
+	public float getBestEvadeDirection()
+	{
+		BucketbotDriver b = nextBucketbot();
+		return b.getBestEvadeDirection(b.evadeDistance);
+	}
+}
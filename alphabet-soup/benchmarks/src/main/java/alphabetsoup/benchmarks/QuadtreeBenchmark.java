@@ -0,0 +1,95 @@
+/**
+ *
+ */
+package alphabetsoup.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import alphabetsoup.framework.Circle;
+import alphabetsoup.framework.MersenneTwisterFast;
+import alphabetsoup.framework.Quadtree;
+
+/**Benchmarks the Quadtree operations Map performs for every bucketbot move: checking a move for collisions,
+ * making the move, and finding what is nearby.  The Quadtree is filled with bucketbot sized Circles at random
+ * locations, and each operation works on the next Circle in turn, moving it by up to its own radius.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QuadtreeBenchmark {
+
+	@Param({"100", "1000", "10000"})
+	public int numObjects;
+
+	@Param({"200", "500", "1000"})
+	public float mapSize;
+
+	private static final float radius = 4.0f;
+	private static final float queryRadius = 25.0f;	//about the distance a bucketbot looks ahead when evading
+
+	private Quadtree quadtree;
+	private Circle objects[];
+	private float homeX[], homeY[];		//where each Circle was put
+	private float targetX[], targetY[];	//where each Circle is moved to
+	private boolean atHome[];
+	private Circle queries[];
+	private int next = 0;
+
+	@Setup(Level.Trial)
+	public void setUp()
+	{
+		MersenneTwisterFast rand = new MersenneTwisterFast(1);
+		quadtree = new Quadtree(mapSize, mapSize);
+		objects = new Circle[numObjects];
+		homeX = new float[numObjects];		homeY = new float[numObjects];
+		targetX = new float[numObjects];	targetY = new float[numObjects];
+		atHome = new boolean[numObjects];
+		queries = new Circle[numObjects];
+		for(int i = 0; i < numObjects; i++)
+		{
+			homeX[i] = radius + rand.nextFloat() * (mapSize - 2*radius);
+			homeY[i] = radius + rand.nextFloat() * (mapSize - 2*radius);
+			targetX[i] = Math.min(Math.max(homeX[i] + radius * (2*rand.nextFloat() - 1), radius), mapSize - radius);
+			targetY[i] = Math.min(Math.max(homeY[i] + radius * (2*rand.nextFloat() - 1), radius), mapSize - radius);
+			atHome[i] = true;
+			objects[i] = new Circle(radius, homeX[i], homeY[i]);
+			quadtree.addCircleObject(objects[i]);
+			queries[i] = new Circle(queryRadius, rand.nextFloat() * mapSize, rand.nextFloat() * mapSize);
+		}
+	}
+
+	private int nextIndex()
+	{
+		if(++next >= numObjects) next = 0;
+		return next;
+	}
+
+	@Benchmark
+	public boolean isValidMove()
+	{
+		int i = nextIndex();
+		return quadtree.isValidMove(objects[i], targetX[i], targetY[i]);
+	}
+
+	@Benchmark
+	public void moveTo()
+	{
+		//move each Circle back and forth, so the tree stays the same from one iteration to the next
+		int i = nextIndex();
+		if(atHome[i]) quadtree.moveTo(objects[i], targetX[i], targetY[i]);
+		else quadtree.moveTo(objects[i], homeX[i], homeY[i]);
+		atHome[i] = !atHome[i];
+	}
+
+	@Benchmark
+	public List<Circle> getObjectsWithinCircle()
+	{
+		return quadtree.getObjectsWithinCircle(queries[nextIndex()]);
+	}
+}
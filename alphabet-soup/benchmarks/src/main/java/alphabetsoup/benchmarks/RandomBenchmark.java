@@ -0,0 +1,51 @@
+/**
+ *
+ */
+package alphabetsoup.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import alphabetsoup.base.WordListBase;
+import alphabetsoup.framework.MersenneTwisterFast;
+import alphabetsoup.simulators.greedytaskallocation.SimulationWorldGreedyTaskAllocation;
+
+/**Benchmarks the random number generation used throughout the simulation.  Neither depends on the map, so
+ * they are parameterized only by the number of draws per call (as one draw per bucketbot per step would make).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RandomBenchmark {
+
+	@Param({"1", "100", "10000"})
+	public int numDraws;
+
+	private MersenneTwisterFast rand;
+	private WordListBase wordList;
+
+	@Setup(Level.Trial)
+	public void setUp()
+	{
+		rand = new MersenneTwisterFast(1);
+		SimulationWorldGreedyTaskAllocation sw = new SimulationWorldGreedyTaskAllocation(BenchmarkWorlds.loadConfiguration(1, 200));
+		wordList = (WordListBase)sw.getWordList();
+	}
+
+	@Benchmark
+	public void nextFloat(Blackhole bh)
+	{
+		for(int i = 0; i < numDraws; i++) bh.consume(rand.nextFloat());
+	}
+
+	@Benchmark
+	public void generateRandomLetter(Blackhole bh)
+	{
+		for(int i = 0; i < numDraws; i++) bh.consume(wordList.generateRandomLetter());
+	}
+}
@@ -0,0 +1,262 @@
+/**
+ *
+ */
+package alphabetsoup.benchmarks;
+
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.*;
+
+import alphabetsoup.simulators.greedytaskallocation.SimulationWorldGreedyTaskAllocation;
+
+/**ScenarioBenchmark runs complete simulations of SimulationWorldGreedyTaskAllocation without the user interface
+ * and measures, for each scenario, the simulated seconds per wall clock second, the peak heap and the bytes
+ * allocated per simulated second.  Each scenario is run for its simulation_warmup_time (untimed, which also
+ * warms up the JIT), then measured for its simulation_duration.  The scenarios are:
+ * small, which is "kiva.config";
+ * medium, which is "alphabetsoup.config" (with the dictionary of "kiva.config", since aspell_dictionary.txt is not distributed);
+ * large, a synthetic warehouse with 2000 bucketbots and 20000 buckets, run only when named on the command line
+ * as it takes a few minutes.
+ * <p>
+ * The results are compared against a baseline file, and if the simulated seconds per wall clock second of any scenario
+ * fall more than the tolerance below the baseline, the regression is printed and the exit code is 1.
+ * A scenario with no baseline is an error, found before anything is run.
+ * Increases in peak heap or allocation beyond the tolerance are printed as warnings.  Usage:
+ * <pre>
+ * ScenarioBenchmark [-baseline file] [-tolerance fraction] [-save] [scenario...]
+ * </pre>
+ * where -save writes the results as the new baseline of the scenarios that were run rather than comparing against it,
+ * keeping the baselines of the other scenarios.
+ */
+public class ScenarioBenchmark {
+
+	/**Scenarios run when none are named on the command line. */
+	public static final String [] defaultScenarios = {"small", "medium"};
+
+	/**Measurements of a single scenario. */
+	public static class Result {
+		public double simSecondsPerWallSecond;
+		public long peakHeapBytes;
+		public double allocatedBytesPerSimSecond;
+	}
+
+	/**Loads the parameters of a scenario.
+	 * @param name name of the scenario
+	 * @return parameters of the simulation
+	 */
+	public static Properties loadScenario(String name)
+	{
+		if(name.equals("small"))
+			return BenchmarkWorlds.loadConfiguration("kiva.config");
+
+		if(name.equals("medium")) {
+			Properties params = BenchmarkWorlds.loadConfiguration("alphabetsoup.config");
+			params.setProperty("dictionary", new File(BenchmarkWorlds.home, "OneWord.txt").getPath());
+			return params;
+		}
+
+		if(name.equals("large")) {
+			//same density of buckets as kiva.config (one per 1000 square units).  Each bucketbot choosing a task
+			// checks every open letter request against every unused bucket, so the word stations are kept few and
+			// hold one word each, or the tasks handed out on the first step alone take hours
+			Properties params = BenchmarkWorlds.loadConfiguration("kiva.config");
+			params.setProperty("map_width", "4500");
+			params.setProperty("map_length", "4500");
+			params.setProperty("num_bucketbots", "2000");
+			params.setProperty("num_buckets", "20000");
+			params.setProperty("num_letter_stations", "20");
+			params.setProperty("num_word_stations", "20");
+			params.setProperty("word_station_capacity", "1");
+			params.setProperty("simulation_warmup_time", "10");
+			params.setProperty("simulation_duration", "20");
+			return params;
+		}
+
+		throw new IllegalArgumentException("Unknown scenario: " + name);
+	}
+
+	/**Builds and runs a scenario, measuring the time spent on its simulation_duration.
+	 * @param params parameters of the simulation
+	 * @return measurements of the scenario
+	 */
+	public static Result run(Properties params)
+	{
+		double warmup_time = Double.parseDouble(params.getProperty("simulation_warmup_time"));
+		double duration = Double.parseDouble(params.getProperty("simulation_duration"));
+
+		SimulationWorldGreedyTaskAllocation sw = new SimulationWorldGreedyTaskAllocation(params);
+		sw.update(warmup_time);
+
+		//start the peak from the live heap of this simulation, not the garbage of the ones before
+		List<MemoryPoolMXBean> heap_pools = new ArrayList<MemoryPoolMXBean>();
+		for(MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+			if(pool.getType() == MemoryType.HEAP) heap_pools.add(pool);
+		System.gc();
+		for(MemoryPoolMXBean pool : heap_pools)
+			pool.resetPeakUsage();
+
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+		long thread_id = Thread.currentThread().getId();
+		long start_allocated = threads.getThreadAllocatedBytes(thread_id);
+		long start_time = System.nanoTime();
+
+		sw.update(duration);
+
+		long wall_time = System.nanoTime() - start_time;
+		long allocated = threads.getThreadAllocatedBytes(thread_id) - start_allocated;
+
+		Result result = new Result();
+		result.simSecondsPerWallSecond = duration / (wall_time / 1e9);
+		result.allocatedBytesPerSimSecond = allocated / duration;
+		//the pools peak at different times, so this may overstate the peak of the whole heap slightly
+		for(MemoryPoolMXBean pool : heap_pools)
+			result.peakHeapBytes += pool.getPeakUsage().getUsed();
+		return result;
+	}
+
+	/**Loads a baseline file.
+	 * @param file baseline file
+	 * @return baseline values, empty if the file does not exist
+	 */
+	public static Properties loadBaseline(File file) throws IOException
+	{
+		Properties baseline = new Properties();
+		if(!file.exists()) return baseline;
+		FileInputStream in = new FileInputStream(file);
+		baseline.load(in);
+		in.close();
+		return baseline;
+	}
+
+	/**Writes the results into a baseline file, keeping the baselines of the scenarios that were not run.
+	 * @param file baseline file
+	 * @param results results of each scenario that was run
+	 */
+	public static void saveBaseline(File file, Map<String, Result> results) throws IOException
+	{
+		Properties baseline = loadBaseline(file);
+		for(String name : results.keySet()) {
+			Result r = results.get(name);
+			baseline.setProperty(name + ".sim_seconds_per_wall_second", Double.toString(r.simSecondsPerWallSecond));
+			baseline.setProperty(name + ".peak_heap_bytes", Long.toString(r.peakHeapBytes));
+			baseline.setProperty(name + ".allocated_bytes_per_sim_second", Double.toString(r.allocatedBytesPerSimSecond));
+		}
+
+		//keep the file in a stable order, one scenario after another
+		TreeSet<String> keys = new TreeSet<String>(baseline.stringPropertyNames());
+		PrintWriter out = new PrintWriter(new FileWriter(file));
+		out.println("#Baseline of ScenarioBenchmark; regenerate with -save on the machine the benchmarks are compared on");
+		for(String key : keys)
+			out.println(key + "=" + baseline.getProperty(key));
+		out.close();
+	}
+
+	/**Checks whether the baseline has values for a scenario.
+	 * @param name name of the scenario
+	 * @param baseline baseline values
+	 * @return true if the scenario can be compared against the baseline
+	 */
+	public static boolean hasBaseline(String name, Properties baseline)
+	{
+		return baseline.getProperty(name + ".sim_seconds_per_wall_second") != null
+			&& baseline.getProperty(name + ".peak_heap_bytes") != null
+			&& baseline.getProperty(name + ".allocated_bytes_per_sim_second") != null;
+	}
+
+	/**Compares a result against the baseline, printing any differences beyond the tolerance.
+	 * @param name name of the scenario
+	 * @param r result of the scenario
+	 * @param baseline baseline values
+	 * @param tolerance fraction the results may differ from the baseline
+	 * @return false if the throughput regressed beyond the tolerance, or there is no baseline for the scenario
+	 */
+	public static boolean compare(String name, Result r, Properties baseline, double tolerance)
+	{
+		if(!hasBaseline(name, baseline)) {
+			System.out.println("  ERROR: no baseline for " + name);
+			return false;
+		}
+		double base_throughput = Double.parseDouble(baseline.getProperty(name + ".sim_seconds_per_wall_second"));
+		double base_heap = Double.parseDouble(baseline.getProperty(name + ".peak_heap_bytes"));
+		double base_allocated = Double.parseDouble(baseline.getProperty(name + ".allocated_bytes_per_sim_second"));
+
+		if(r.peakHeapBytes > base_heap * (1 + tolerance))
+			System.out.println("  WARNING: " + name + " peak heap " + formatChange(r.peakHeapBytes, base_heap) + " of the baseline");
+		if(r.allocatedBytesPerSimSecond > base_allocated * (1 + tolerance))
+			System.out.println("  WARNING: " + name + " allocation per simulated second " + formatChange(r.allocatedBytesPerSimSecond, base_allocated) + " of the baseline");
+		if(r.simSecondsPerWallSecond < base_throughput * (1 - tolerance)) {
+			System.out.println("  REGRESSION: " + name + " simulated seconds per wall second " + formatChange(r.simSecondsPerWallSecond, base_throughput)
+					+ " of the baseline (" + String.format("%.1f", r.simSecondsPerWallSecond) + " vs " + String.format("%.1f", base_throughput) + ")");
+			return false;
+		}
+		return true;
+	}
+
+	private static String formatChange(double value, double base)
+	{
+		return String.format("%+.1f%%", 100 * (value / base - 1));
+	}
+
+	public static void main(String[] args)
+	{
+		File baseline_file = new File("scenario-baselines.properties");
+		double tolerance = 0.25;
+		boolean save = false;
+		List<String> scenario_names = new ArrayList<String>();
+		for(int i = 0; i < args.length; i++) {
+			if(args[i].equals("-baseline")) baseline_file = new File(args[++i]);
+			else if(args[i].equals("-tolerance")) tolerance = Double.parseDouble(args[++i]);
+			else if(args[i].equals("-save")) save = true;
+			else scenario_names.add(args[i]);
+		}
+		if(scenario_names.size() == 0) scenario_names.addAll(Arrays.asList(defaultScenarios));
+
+		Properties baseline = new Properties();
+		if(!save) {
+			try {
+				baseline = loadBaseline(baseline_file);
+			}
+			catch (Throwable e) {
+				System.out.println("Could not load baseline file " + baseline_file + ": " + e);
+				System.exit(1);
+			}
+			//fail before running anything, as a scenario without a baseline could never fail
+			boolean missing = false;
+			for(String name : scenario_names) {
+				if(hasBaseline(name, baseline)) continue;
+				System.out.println("No baseline for " + name + " in " + baseline_file + ", run with -save to store one");
+				missing = true;
+			}
+			if(missing) System.exit(1);
+		}
+
+		Map<String, Result> results = new LinkedHashMap<String, Result>();
+		boolean regressed = false;
+		for(String name : scenario_names) {
+			Result r = run(loadScenario(name));
+			results.put(name, r);
+			System.out.println(name + ": " + String.format("%.1f", r.simSecondsPerWallSecond) + " simulated s/wall s, "
+					+ String.format("%.1f", r.peakHeapBytes / 1048576.0) + " MB peak heap, "
+					+ String.format("%.1f", r.allocatedBytesPerSimSecond / 1024.0) + " KB allocated/simulated s");
+			if(!save && !compare(name, r, baseline, tolerance)) regressed = true;
+		}
+
+		if(save) {
+			try {
+				saveBaseline(baseline_file, results);
+			}
+			catch (Throwable e) {
+				System.out.println("Could not save baseline file " + baseline_file + ": " + e);
+				System.exit(1);
+			}
+			System.out.println("Saved baseline " + baseline_file);
+		}
+
+		if(regressed) {
+			System.out.println("THROUGHPUT REGRESSION beyond " + Math.round(100 * tolerance) + "% of baseline " + baseline_file);
+			System.exit(1);
+		}
+	}
+}
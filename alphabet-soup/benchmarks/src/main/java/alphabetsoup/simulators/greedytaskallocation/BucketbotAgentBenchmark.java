@@ -0,0 +1,58 @@
+/**
+ *
+ */
+package alphabetsoup.simulators.greedytaskallocation;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import alphabetsoup.benchmarks.BenchmarkWorlds;
+import alphabetsoup.framework.Bucket;
+
+/**Benchmarks the task allocation search of BucketbotAgent, on a simulation which has been warmed up so that
+ * there are open letter requests and buckets spread over the map.  It is in the same package as BucketbotAgent
+ * so it can give back each task after finding it, which keeps the simulation the same from one call to the next.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BucketbotAgentBenchmark {
+
+	@Param({"10", "100"})
+	public int numBucketbots;
+
+	@Param({"200", "500", "1000"})
+	public float mapSize;
+
+	private SimulationWorldGreedyTaskAllocation simulationWorld;
+	private int next = 0;
+
+	@Setup(Level.Trial)
+	public void setUp()
+	{
+		simulationWorld = BenchmarkWorlds.createWorld(numBucketbots, mapSize, 30.0);
+		for(BucketbotAgent a : simulationWorld.bucketbotagents) 
+		{
+			//normally set on the first call to requestNewTask
+			a.manager = simulationWorld.bucketbotManager;
+			a.map = simulationWorld.map;
+			a.waypointGraph = simulationWorld.waypointGraph;
+		}
+		if(simulationWorld.bucketbotManager.openLetterRequests.size() == 0)
+			throw new IllegalStateException("no open letter requests to search");
+	}
+
+	@Benchmark
+	public Bucket getBestDeliveryTask()
+	{
+		if(++next >= simulationWorld.bucketbotagents.length) next = 0;
+		BucketbotAgent a = simulationWorld.bucketbotagents[next];
+		Bucket b = a.getBestDeliveryTask();
+		a.cancelCurrentLetterDelivery();
+		return b;
+	}
+}
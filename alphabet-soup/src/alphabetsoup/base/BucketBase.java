@@ -14,13 +14,15 @@ import alphabetsoup.framework.Letter;
  * @author Chris Hazard
  */
 public class BucketBase extends Circle implements Bucket {
+	private static final long serialVersionUID = 1L;
+	
 	private int capacity;
 	protected HashSet<Letter> letters;
 	
 	public BucketBase(float bucket_radius, int bucket_capacity) {
 		super(bucket_radius);
 		capacity = bucket_capacity;
-		letters = new HashSet<Letter>();
+		letters = new LinkedHashSet<Letter>();
 	}
 	
 	/* (non-Javadoc)
@@ -3,12 +3,15 @@
  */
 package alphabetsoup.base;
 
+import java.io.Serializable;
 import java.util.*;
 
 import alphabetsoup.framework.Bucket;
 import alphabetsoup.framework.Bucketbot;
 import alphabetsoup.framework.Circle;
 import alphabetsoup.framework.Map;
+import alphabetsoup.framework.PhasedUpdateable;
+import alphabetsoup.framework.Schedulable;
 import alphabetsoup.framework.SimulationWorld;
 import alphabetsoup.framework.Updateable;
 
@@ -17,8 +20,11 @@ import alphabetsoup.framework.Updateable;
  * but does not have logic to control them.  BucketbotBase should be extended to include logic.
  * @author Chris Hazard
  */
-public class BucketbotBase extends Circle implements Bucketbot, Updateable 
+public class BucketbotBase extends Circle implements Bucketbot, Updateable, Schedulable, PhasedUpdateable 
 {	
+	private static final long serialVersionUID = 1L;
+	
+	protected SimulationWorld simulationWorld;	//simulation the bucketbot is in
 	private float bucketPickupSetdownTime;
 	private float maxAcceleration;
 	private float maxVelocity;
@@ -42,6 +48,7 @@ public class BucketbotBase extends Circle implements Bucketbot, Updateable
 	private double minUntil;		//minimum of *Until times -set in getNextEventTime
 
 	public double curTime;		//current time of last action
+	private boolean readyToAct = false;	//set by updateMotion if updateActions should act this step
 	
 	private BucketbotTask currentTask;
 	
@@ -72,7 +79,7 @@ public class BucketbotBase extends Circle implements Bucketbot, Updateable
 	 * in each state, and also maintains the stateQueue.
 	 * @author Chris Hazard
 	 */
-	public interface BucketbotState {
+	public interface BucketbotState extends Serializable {
 		/**Returns the state name as will be kept track in the global statistics
 		 * @return the state name
 		 */
@@ -86,10 +93,11 @@ public class BucketbotBase extends Circle implements Bucketbot, Updateable
 	
 	public List<BucketbotState> stateQueue = new ArrayList<BucketbotState>(); 
 	
-	public BucketbotBase(float bucketbot_radius, float bucket_pickup_setdown_time,
+	public BucketbotBase(SimulationWorld sw, float bucketbot_radius, float bucket_pickup_setdown_time,
 			float bucketbot_max_acceleration, float bucketbot_max_velocity, float collision_penalty_time) 
 	{
 		super(bucketbot_radius);
+		simulationWorld = sw;
 		resetStatistics();
 		bucketPickupSetdownTime = bucket_pickup_setdown_time;
 		maxAcceleration = bucketbot_max_acceleration;
@@ -144,7 +152,7 @@ public class BucketbotBase extends Circle implements Bucketbot, Updateable
 		if(getSpeed() > 0.0f)
 			return false;
 		
-		Map map = SimulationWorld.getSimulationWorld().getMap();
+		Map map = simulationWorld.getMap();
 		
 		//if outside of tolerance range, can't pick it up
 		if( (b.getX()-getX())*(b.getX()-getX()) + (b.getY()-getY())*(b.getY()-getY())
@@ -184,6 +192,7 @@ public class BucketbotBase extends Circle implements Bucketbot, Updateable
 	 */
 	final public void waitUntil(double time) {
 		blockedUntil = Math.max(time, blockedUntil);
+		simulationWorld.rescheduleUpdateable(this);
 	}
 	
 	/* (non-Javadoc)
@@ -205,12 +214,64 @@ public class BucketbotBase extends Circle implements Bucketbot, Updateable
 		}
 	}
 	
+	/* (non-Javadoc)
+	 * @see alphabetsoup.framework.Schedulable#getNextUpdateTime(double)
+	 */
+	public double getNextUpdateTime(double cur_time) {
+		//update does nothing while blocked
+		if(cur_time < blockedUntil) return blockedUntil;
+		
+		SimulationWorld sw = simulationWorld;
+		if(!sw.isUsingLocalTimeStepping()) return cur_time;
+		
+		//with local time stepping, the bucketbot doesn't need to be updated again until its next event,
+		// or until something else could possibly have gotten close enough to collide with it
+		float speed = Math.max(getSpeed(), getTargetSpeed());
+		double max_time = sw.getLocalTimeStepMax();
+		//while [ac|de]celerating, velocity only changes on updates, so keep the steps as small as the global
+		// time step would be (time to cover most of its diameter) or it won't accurately reach its goals
+		if(getTargetSpeedDifference() > 0.0f)
+			max_time = Math.min(max_time, 1.8f * getRadius() / getMaxVelocity());
+		double min_time = sw.getMap().getTolerance()/3 / sw.getMap().getMaxVelocity();
+		//no other bucketbot can go any longer than this without being updated either
+		double max_lag = Math.max(sw.getLocalTimeStepMax(), min_time);
+		double time_without_collision = sw.getMap().getTimeWithoutCollision(this, speed, cur_time, max_time, max_lag);
+		time_without_collision = Math.max(time_without_collision, min_time);
+		return Math.min(getNextEventTime(cur_time), cur_time + time_without_collision);
+	}
+	
+	/* (non-Javadoc)
+	 * @see alphabetsoup.framework.Bucketbot#getPositionTime()
+	 */
+	public double getPositionTime() {
+		//it doesn't move while blocked, so it only has to catch up from when it was unblocked
+		return Math.max(curTime, blockedUntil);
+	}
+	
 	/* (non-Javadoc)
 	 * @see alphabetsoup.framework.Updateable#update(double, double)
 	 */
 	public void update(double last_time, double cur_time) 
 	{
+		updateMotion(last_time, cur_time);
+		updateActions(last_time, cur_time);
+	}
+	
+	/* (non-Javadoc)
+	 * @see alphabetsoup.framework.PhasedUpdateable#updateMotion(double, double)
+	 */
+	public void updateMotion(double last_time, double cur_time) 
+	{
+		readyToAct = false;
 		if(cur_time < blockedUntil) return;
+		
+		//with local time stepping, the bucketbot may have skipped some steps, so move it over all of the time
+		// since it was last updated (unless it was blocked since then, in which case it was not moving
+		// until it was unblocked)
+		if(simulationWorld.isUsingLocalTimeStepping()) {
+			if(blockedUntil <= curTime) last_time = Math.min(last_time, curTime);
+			else last_time = Math.max(last_time, blockedUntil);
+		}
 		curTime = cur_time;
 		double time_delta = (cur_time - last_time);
 
@@ -247,8 +308,17 @@ public class BucketbotBase extends Circle implements Bucketbot, Updateable
 		float y_new = (float)(yVelocity * time_delta + getY());
 
 		//try to make move.  if can't move due to a collision, then stop
-		if(!SimulationWorld.getSimulationWorld().getMap().moveBucketbot(this, x_new, y_new)) 
+		// (with swept collisions, it first moves as far as it can toward whatever it would hit)
+		Map map = simulationWorld.getMap();
+		float moved;
+		if(map.isUsingSweptCollisions())
+			moved = map.moveBucketbotUntilContact(this, x_new, y_new, last_time, cur_time);
+		else
+			moved = map.moveBucketbot(this, x_new, y_new) ? 1.0f : 0.0f;
+		if(moved < 1.0f) 
 		{
+			if(moved > 0.0f)
+				distanceTraveled += moved * Math.sqrt( (x_new-x_old)*(x_new-x_old) + (y_new-y_old)*(y_new-y_old));
 			xVelocity = 0.0f;
 			yVelocity = 0.0f;
 			targetXVelocity = 0.0f;
@@ -257,6 +327,7 @@ public class BucketbotBase extends Circle implements Bucketbot, Updateable
 			numCollisions++;
 			return;
 		}
+		readyToAct = true;
 		
 		//set moving flags
 		if(xVelocity == 0.0f && yVelocity == 0.0f) setMoving(false);
@@ -266,7 +337,16 @@ public class BucketbotBase extends Circle implements Bucketbot, Updateable
 		
 		//count distanceTraveled
 		distanceTraveled += Math.sqrt( (x_new-x_old)*(x_new-x_old) + (y_new-y_old)*(y_new-y_old));
-
+	}
+	
+	/* (non-Javadoc)
+	 * @see alphabetsoup.framework.PhasedUpdateable#updateActions(double, double)
+	 */
+	public void updateActions(double last_time, double cur_time) 
+	{
+		if(!readyToAct) return;
+		readyToAct = false;
+		
 		//compute time in previous task and state
 		if(currentTask != null) 
 		{
@@ -3,6 +3,8 @@
  */
 package alphabetsoup.base;
 
+import java.io.Serializable;
+
 import alphabetsoup.framework.Bucket;
 import alphabetsoup.framework.Circle;
 import alphabetsoup.framework.Letter;
@@ -14,7 +16,9 @@ import alphabetsoup.framework.WordStation;
  * (physically meaning via bucketbots, buckets, and stations).
  * @author Chris Hazard
  */
-public class BucketbotTask {
+public class BucketbotTask implements Serializable {
+	private static final long serialVersionUID = 1L;
+	
 	/**TaskType is the type of task, and indicates the meaning of each of the fields of this class.
 	 * See the corresponding createTaskXXX method in this class for each TaskType for details.
 	 */
@@ -3,6 +3,7 @@
  */
 package alphabetsoup.base;
 
+import java.io.Serializable;
 import java.util.*;
 
 import alphabetsoup.framework.*;
@@ -12,11 +13,13 @@ import alphabetsoup.framework.*;
  * when requested to do so.
  * @author Chris Hazard
  */
-public class LetterStationBase extends Circle implements LetterStation, Updateable {
+public class LetterStationBase extends Circle implements LetterStation, Updateable, Schedulable {
+	private static final long serialVersionUID = 1L;
+	
 	private int capacity;
 	private int bundleSize;
 	private float letterToBucketTime;
-	public HashSet<Letter> assignedLetters = new HashSet<Letter>();
+	public HashSet<Letter> assignedLetters = new LinkedHashSet<Letter>();
 	
 	protected double blockedUntilTime;
 	
@@ -30,8 +33,10 @@ public class LetterStationBase extends Circle implements LetterStation, Updateab
 		numLettersRequested = 0;
 	}
 	
-	protected static class LetterRequested 
+	protected static class LetterRequested implements Serializable 
 	{
+		private static final long serialVersionUID = 1L;
+		
 		public LetterRequested(Bucketbot bb, Letter l) {
 			bucketbot = bb;	letter = l;
 		}
@@ -76,6 +81,15 @@ public class LetterStationBase extends Circle implements LetterStation, Updateab
 			return blockedUntilTime;
 	}
 
+	/* (non-Javadoc)
+	 * @see alphabetsoup.framework.Schedulable#getNextUpdateTime(double)
+	 */
+	public double getNextUpdateTime(double cur_time) {
+		//update does nothing while blocked
+		if(cur_time < blockedUntilTime) return blockedUntilTime;
+		return cur_time;
+	}
+
 	/* (non-Javadoc)
 	 * @see alphabetsoup.framework.Updateable#update(double, double)
 	 */
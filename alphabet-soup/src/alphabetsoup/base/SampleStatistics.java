@@ -0,0 +1,156 @@
+/**
+ *
+ */
+package alphabetsoup.base;
+
+/**SampleStatistics accumulates independent observations of a value (such as one statistic from
+ * several replications of a simulation), and computes the sample mean, variance, and
+ * Student-t confidence intervals of the mean.
+ */
+public class SampleStatistics {
+
+	private int count = 0;
+	private double mean = 0.0;
+	private double sumSquaredDeviations = 0.0;	//running sum used to compute the variance (Welford's method)
+
+	/**Adds an observation.
+	 * @param x value observed
+	 */
+	public void add(double x) {
+		count++;
+		double delta = x - mean;
+		mean += delta / count;
+		sumSquaredDeviations += delta * (x - mean);
+	}
+
+	/**
+	 * @return Returns the number of observations.
+	 */
+	public int getCount() {
+		return count;
+	}
+
+	/**
+	 * @return Returns the sample mean, 0 if there are no observations.
+	 */
+	public double getMean() {
+		return mean;
+	}
+
+	/**
+	 * @return Returns the unbiased sample variance, 0 if there are fewer than 2 observations.
+	 */
+	public double getVariance() {
+		if(count < 2) return 0.0;
+		return sumSquaredDeviations / (count - 1);
+	}
+
+	/**
+	 * @return Returns the sample standard deviation.
+	 */
+	public double getStandardDeviation() {
+		return Math.sqrt(getVariance());
+	}
+
+	/**Returns the half width of the two sided confidence interval of the mean, based on the Student-t distribution.
+	 * @param confidence_level confidence level of the interval in (0,1), such as 0.95
+	 * @return half width of the interval, infinite if there are fewer than 2 observations
+	 */
+	public double getConfidenceHalfWidth(double confidence_level) {
+		if(count < 2) return Double.POSITIVE_INFINITY;
+		double t = getStudentTQuantile(1.0 - (1.0 - confidence_level) / 2, count - 1);
+		return t * Math.sqrt(getVariance() / count);
+	}
+
+	/**Returns the value of x for which the Student-t cumulative distribution function is p.
+	 * @param p probability in (0,1)
+	 * @param degrees_of_freedom degrees of freedom of the distribution
+	 * @return quantile of the distribution
+	 */
+	public static double getStudentTQuantile(double p, double degrees_of_freedom) {
+		if(p < 0.5) return -getStudentTQuantile(1.0 - p, degrees_of_freedom);
+
+		//the cdf is monotonic, so bisect.  first find an upper bound
+		double low = 0.0, high = 1.0;
+		while(getStudentTCDF(high, degrees_of_freedom) < p) {
+			low = high;
+			high *= 2;
+		}
+		for(int i = 0; i < 100; i++) {
+			double mid = (low + high) / 2;
+			if(getStudentTCDF(mid, degrees_of_freedom) < p) low = mid;
+			else high = mid;
+		}
+		return (low + high) / 2;
+	}
+
+	/**Returns the Student-t cumulative distribution function at x.
+	 * @param x value at which to evaluate the cdf
+	 * @param degrees_of_freedom degrees of freedom of the distribution
+	 * @return probability that a Student-t random variable is at most x
+	 */
+	public static double getStudentTCDF(double x, double degrees_of_freedom) {
+		double tail = 0.5 * regularizedIncompleteBeta(degrees_of_freedom / 2, 0.5,
+								degrees_of_freedom / (degrees_of_freedom + x*x));
+		return x > 0 ? 1.0 - tail : tail;
+	}
+
+	/**Returns the regularized incomplete beta function I_x(a,b)
+	 */
+	private static double regularizedIncompleteBeta(double a, double b, double x) {
+		if(x <= 0.0) return 0.0;
+		if(x >= 1.0) return 1.0;
+		double front = Math.exp(logGamma(a + b) - logGamma(a) - logGamma(b) + a * Math.log(x) + b * Math.log(1.0 - x));
+		//the continued fraction converges quickly on only one side of the mean
+		if(x < (a + 1) / (a + b + 2))
+			return front * incompleteBetaContinuedFraction(a, b, x) / a;
+		return 1.0 - front * incompleteBetaContinuedFraction(b, a, 1.0 - x) / b;
+	}
+
+	/**Evaluates the continued fraction of the incomplete beta function using Lentz's method
+	 */
+	private static double incompleteBetaContinuedFraction(double a, double b, double x) {
+		final double tiny = 1e-300;
+		double c = 1.0;
+		double d = 1.0 - (a + b) * x / (a + 1);
+		if(Math.abs(d) < tiny) d = tiny;
+		d = 1.0 / d;
+		double f = d;
+		for(int m = 1; m <= 300; m++) {
+			//even step
+			double numerator = m * (b - m) * x / ((a + 2*m - 1) * (a + 2*m));
+			d = 1.0 + numerator * d;
+			if(Math.abs(d) < tiny) d = tiny;
+			c = 1.0 + numerator / c;
+			if(Math.abs(c) < tiny) c = tiny;
+			d = 1.0 / d;
+			f *= d * c;
+
+			//odd step
+			numerator = -(a + m) * (a + b + m) * x / ((a + 2*m) * (a + 2*m + 1));
+			d = 1.0 + numerator * d;
+			if(Math.abs(d) < tiny) d = tiny;
+			c = 1.0 + numerator / c;
+			if(Math.abs(c) < tiny) c = tiny;
+			d = 1.0 / d;
+			double delta = d * c;
+			f *= delta;
+			if(Math.abs(delta - 1.0) < 1e-15) break;
+		}
+		return f;
+	}
+
+	/**Returns the natural log of the gamma function (Lanczos approximation)
+	 */
+	private static double logGamma(double x) {
+		final double coefficients[] = { 76.18009172947146, -86.50532032941677, 24.01409824083091,
+				-1.231739572450155, 0.1208650973866179e-2, -0.5395239384953e-5 };
+		double y = x;
+		double tmp = x + 5.5;
+		tmp -= (x + 0.5) * Math.log(tmp);
+		double series = 1.000000000190015;
+		for(double coefficient : coefficients)
+			series += coefficient / ++y;
+		return -tmp + Math.log(2.5066282746310005 * series / x);
+	}
+}
@@ -0,0 +1,148 @@
+/**
+ *
+ */
+package alphabetsoup.base;
+
+import java.util.*;
+
+import alphabetsoup.framework.SimulationWorld;
+import alphabetsoup.framework.WordStation;
+
+/**SteadyStateDetector decides when a simulation has warmed up, so that a fixed warmup time does not have to be
+ * guessed.  It watches the word completion rate and the letter delivery rate (letters delivered to word stations)
+ * in batches of simulation time, and applies the MSER truncation rule to each series: the number of batches d to
+ * discard is the one which minimizes the variance of the mean of the rest, sum((x_i - mean)^2) / (n-d)^2.
+ * Only truncations within the first half of the series are considered, and the simulation is taken to be in
+ * steady state once both series are best truncated before their halfway point, which means that the rest of the
+ * series is no longer trending.  The later of the two truncation points is the warmup cutoff.<br>
+ * When steady state is found, the statistics of the simulation are reset and the cutoff is recorded with
+ * SimulationWorld.setWarmupCutoffTime, so it appears in the SummaryReport.  The data between the cutoff and
+ * the time steady state was found is discarded as well, since the statistics can't be reset in the past.
+ * Batches end at the end of the first step at or after their end time, so the simulation is not changed.
+ */
+public class SteadyStateDetector {
+
+	protected SimulationWorld simulationWorld;
+	protected double batchTime;
+	protected int minBatches;
+
+	protected double startTime;
+	protected double nextBatchTime;
+	protected double lastBatchTime;
+	protected int lastCompletedWords;
+	protected int lastLettersDelivered;
+
+	protected List<Double> batchEndTimes = new ArrayList<Double>();
+	protected List<Double> wordRates = new ArrayList<Double>();
+	protected List<Double> letterRates = new ArrayList<Double>();
+	protected boolean steady = false;
+
+	/**Starts watching the simulation from its current time.
+	 * @param sw simulation to watch
+	 * @param batch_time simulation time of each batch the rates are measured over
+	 * @param min_batches fewest batches to look at before deciding the simulation is in steady state
+	 */
+	public SteadyStateDetector(SimulationWorld sw, double batch_time, int min_batches)
+	{
+		if(!(batch_time > 0)) throw new IllegalArgumentException("warmup batch time must be positive");
+		simulationWorld = sw;
+		batchTime = batch_time;
+		minBatches = Math.max(2, min_batches);
+		startTime = sw.getCurrentTime();
+		lastBatchTime = startTime;
+		nextBatchTime = startTime + batch_time;
+		lastCompletedWords = getCompletedWords();
+		lastLettersDelivered = getLettersDelivered();
+	}
+
+	/**Should be called at the end of each step of the simulation until steady state is found.
+	 * Finishes a batch if one is due, and resets the statistics if the simulation has reached steady state.
+	 * @return true if steady state was found at the end of this step
+	 */
+	public boolean stepFinished()
+	{
+		if(steady || simulationWorld.getCurrentTime() < nextBatchTime) return false;
+
+		double cur_time = simulationWorld.getCurrentTime();
+		int completed_words = getCompletedWords();
+		int letters_delivered = getLettersDelivered();
+		batchEndTimes.add(cur_time);
+		wordRates.add((completed_words - lastCompletedWords) / (cur_time - lastBatchTime));
+		letterRates.add((letters_delivered - lastLettersDelivered) / (cur_time - lastBatchTime));
+		lastBatchTime = cur_time;
+		lastCompletedWords = completed_words;
+		lastLettersDelivered = letters_delivered;
+		while(nextBatchTime <= cur_time) nextBatchTime += batchTime;
+
+		if(wordRates.size() < minBatches) return false;
+		int word_truncation = getTruncation(wordRates);
+		int letter_truncation = getTruncation(letterRates);
+		if(word_truncation < 0 || letter_truncation < 0) return false;
+
+		int truncation = Math.max(word_truncation, letter_truncation);
+		steady = true;
+		simulationWorld.resetStatistics();
+		simulationWorld.setWarmupCutoffTime((truncation == 0) ? startTime : batchEndTimes.get(truncation - 1));
+		return true;
+	}
+
+	/**Finds the MSER truncation point of a series of rates.
+	 * @param x the series
+	 * @return the number of values to discard from the start, or -1 if the best is not within the first half
+	 * or if the rest of the series is all zero (nothing has been produced yet)
+	 */
+	public static int getTruncation(List<Double> x)
+	{
+		int n = x.size();
+		int half = n / 2;
+
+		//sums of the values from d to the end, built backward
+		double sum = 0.0, sum_squares = 0.0;
+		double mser[] = new double[half + 1];
+		for(int d = n - 1; d >= 0; d--) {
+			sum += x.get(d);
+			sum_squares += x.get(d) * x.get(d);
+			if(d > half) continue;
+			int m = n - d;
+			mser[d] = Math.max(0.0, sum_squares - sum * sum / m) / ((double)m * m);
+		}
+
+		int best = 0;
+		for(int d = 1; d <= half; d++)
+			if(mser[d] < mser[best]) best = d;
+
+		//if the best is at the edge of the search, the series may still be trending
+		if(best == half) return -1;
+		for(int i = best; i < n; i++)
+			if(x.get(i) > 0) return best;
+		return -1;
+	}
+
+	/**
+	 * @return true if steady state has been found
+	 */
+	public boolean isSteady()
+	{
+		return steady;
+	}
+
+	/**
+	 * @return simulation time the detector started watching at
+	 */
+	public double getStartTime()
+	{
+		return startTime;
+	}
+
+	protected int getCompletedWords()
+	{
+		return simulationWorld.wordList.getCompletedWords().size();
+	}
+
+	protected int getLettersDelivered()
+	{
+		int letters_delivered = 0;
+		for(WordStation ws : simulationWorld.wordStations) letters_delivered += ws.getNumLettersRequested();
+		return letters_delivered;
+	}
+}
@@ -33,6 +33,8 @@ public class SummaryReport {
 		
 		lines.add("total time: " + four_digits.format(sw.getCurrentTime()));
 		lines.add("current statistics time: " + four_digits.format(elapsed_time));
+		if(!Double.isNaN(sw.getWarmupCutoffTime()))
+			lines.add("automatic warmup cutoff: " + four_digits.format(sw.getWarmupCutoffTime()));
 		
 		double total_distance = 0.0;
 		for(Bucketbot r : robots) total_distance += r.getDistanceTraveled();
@@ -102,6 +104,22 @@ public class SummaryReport {
 		return lines;
 	}
 
+	/**Generates the numeric values of the report, keyed by the name each has in the report text.
+	 * @return values of the report, in the same order as generateReportText
+	 */
+	static public LinkedHashMap<String, Double> generateReportValues(SimulationWorld sw) {
+		LinkedHashMap<String, Double> values = new LinkedHashMap<String, Double>();
+		for(String s : generateReportText(sw)) {
+			int split = s.lastIndexOf(": ");
+			if(split < 0) continue;
+			try {
+				values.put(s.substring(0, split), Double.parseDouble(s.substring(split + 2)));
+			}
+			catch(NumberFormatException e) {}
+		}
+		return values;
+	}
+
 	/**Writes a report to AlphabetSoupReport.txt
 	 */
 	static public void generateReport(SimulationWorld sw) {
@@ -0,0 +1,169 @@
+/**
+ *
+ */
+package alphabetsoup.base;
+
+import java.io.*;
+import java.text.DecimalFormat;
+import java.util.*;
+
+import alphabetsoup.framework.Bucketbot;
+import alphabetsoup.framework.LetterStation;
+import alphabetsoup.framework.SimulationWorld;
+import alphabetsoup.framework.WordStation;
+
+/**TimeSeriesReport writes the statistics of a running simulation to a CSV file as it goes, one row per
+ * interval of simulation time, so that a long run can be watched (and stopped if it is going badly)
+ * without waiting for the SummaryReport at the end.  Each row holds the values for its interval only:
+ * words completed, letters delivered to word stations, collisions, the percent of bucketbot time in each
+ * state, and the fraction of time the letter and word stations were idle.<br>
+ * The values are the differences of the running totals kept by the entities, so writing a row takes time
+ * proportional to the number of entities rather than to the length of the run.  The state columns are the
+ * states the bucketbots have been in by the first row, and the time in any state first seen later is put
+ * in the "other" column, so the columns never change.  Rows are written at the end of the first step
+ * at or after the end of each interval, and are flushed as they are written.  When the statistics are
+ * reset the row that contains the reset starts at the reset, as the earlier part of it is gone.
+ */
+public class TimeSeriesReport {
+
+	/**Running totals of the statistics at one time. */
+	protected static class Totals {
+		double time;
+		int completedWords;
+		int lettersDelivered;
+		int collisions;
+		double letterStationIdleTime;
+		double wordStationIdleTime;
+		HashMap<String, Double> stateTimes = new HashMap<String, Double>();
+	}
+
+	protected SimulationWorld simulationWorld;
+	protected PrintWriter out;
+	protected double interval;
+	protected double nextRowTime;
+	protected double statisticsTime;	//to notice when the statistics have been reset
+	protected Totals previous;
+	protected List<String> states = null;	//state columns, set when the first row is written
+	protected DecimalFormat four_digits = new DecimalFormat("0.000");
+
+	/**Starts a time series of the given simulation from its current time.
+	 * @param sw simulation to report on
+	 * @param file_name path of the CSV file to write
+	 * @param interval simulation time covered by each row
+	 * @throws IOException if the file could not be opened
+	 */
+	public TimeSeriesReport(SimulationWorld sw, String file_name, double interval) throws IOException
+	{
+		if(!(interval > 0)) throw new IllegalArgumentException("time series interval must be positive");
+		simulationWorld = sw;
+		this.interval = interval;
+		out = new PrintWriter(new BufferedWriter(new FileWriter(file_name)));
+		statisticsTime = sw.getStatisticsTime();
+		previous = getTotals();
+		nextRowTime = previous.time + interval;
+	}
+
+	/**Should be called at the end of each step of the simulation, and writes a row if one is due.
+	 */
+	public void stepFinished()
+	{
+		if(simulationWorld.getCurrentTime() < nextRowTime) return;
+		writeRow();
+		while(nextRowTime <= simulationWorld.getCurrentTime()) nextRowTime += interval;
+	}
+
+	/**Writes a final row for any time since the last one, and closes the file.
+	 */
+	public void close()
+	{
+		if(simulationWorld.getCurrentTime() > previous.time) writeRow();
+		out.close();
+	}
+
+	/**Gets the running totals of the simulation's statistics.
+	 */
+	protected Totals getTotals()
+	{
+		Totals t = new Totals();
+		t.time = simulationWorld.getCurrentTime();
+		t.completedWords = simulationWorld.wordList.getCompletedWords().size();
+		for(Bucketbot r : simulationWorld.bucketbots) {
+			t.collisions += r.getNumCollisions();
+			HashMap<String, Double> times = r.getTotalTimes();
+			for(String s : times.keySet()) {
+				Double total = t.stateTimes.get(s);
+				t.stateTimes.put(s, (total == null) ? times.get(s) : total + times.get(s));
+			}
+		}
+		for(LetterStation ls : simulationWorld.letterStations)
+			t.letterStationIdleTime += ls.getIdleTime();
+		for(WordStation ws : simulationWorld.wordStations) {
+			t.lettersDelivered += ws.getNumLettersRequested();
+			t.wordStationIdleTime += ws.getIdleTime();
+		}
+		return t;
+	}
+
+	/**Writes the row for the time since the previous row.
+	 */
+	protected void writeRow()
+	{
+		Totals current = getTotals();
+
+		//the entities start their totals over when the statistics are reset,
+		// so the row only covers the time since the reset
+		if(simulationWorld.getStatisticsTime() != statisticsTime) {
+			statisticsTime = simulationWorld.getStatisticsTime();
+			Totals zero = new Totals();
+			zero.time = statisticsTime;
+			previous = zero;
+			if(current.time <= previous.time) {
+				previous = current;
+				return;
+			}
+		}
+
+		if(states == null) {
+			states = new ArrayList<String>(current.stateTimes.keySet());
+			Collections.sort(states);
+			out.print("time,interval,completed words,letters delivered,collisions");
+			for(String s : states) out.print(",% in " + s);
+			out.println(",% in other,letter station idle,word station idle");
+		}
+
+		double elapsed_time = current.time - previous.time;
+		double bucketbot_time = elapsed_time * simulationWorld.bucketbots.length;
+
+		StringBuilder row = new StringBuilder();
+		row.append(four_digits.format(current.time)).append(',');
+		row.append(four_digits.format(elapsed_time)).append(',');
+		row.append(current.completedWords - previous.completedWords).append(',');
+		row.append(current.lettersDelivered - previous.lettersDelivered).append(',');
+		row.append(current.collisions - previous.collisions);
+
+		double other_time = 0.0;
+		for(String s : current.stateTimes.keySet())
+			if(!states.contains(s)) other_time += getChange(current, s);
+		for(String s : states)
+			row.append(',').append(four_digits.format(100.0 * getChange(current, s) / bucketbot_time));
+		row.append(',').append(four_digits.format(100.0 * other_time / bucketbot_time));
+
+		row.append(',').append(four_digits.format((current.letterStationIdleTime - previous.letterStationIdleTime)
+				/ simulationWorld.letterStations.length / elapsed_time));
+		row.append(',').append(four_digits.format((current.wordStationIdleTime - previous.wordStationIdleTime)
+				/ simulationWorld.wordStations.length / elapsed_time));
+
+		out.println(row);
+		out.flush();
+		previous = current;
+	}
+
+	/**Gets the time spent in a state since the previous row.
+	 */
+	protected double getChange(Totals current, String state)
+	{
+		Double now = current.stateTimes.get(state);
+		Double before = previous.stateTimes.get(state);
+		return ((now == null) ? 0.0 : now) - ((before == null) ? 0.0 : before);
+	}
+}
@@ -3,13 +3,12 @@
  */
 package alphabetsoup.base;
 
-import java.io.FileInputStream;
+import java.io.*;
 import java.util.*;
 
 import alphabetsoup.framework.Letter;
 import alphabetsoup.framework.LetterColor;
 import alphabetsoup.framework.MersenneTwisterFast;
-import alphabetsoup.framework.SimulationWorld;
 import alphabetsoup.framework.Word;
 import alphabetsoup.framework.WordList;
 
@@ -17,24 +16,57 @@ import alphabetsoup.framework.WordList;
  * and generating letters and words. 
  * @author Chris Hazard
  */
-public class WordListBase implements WordList {
+public class WordListBase implements WordList, Serializable {
+	private static final long serialVersionUID = 1L;
 
 	public List<Word> words = new ArrayList<Word>();
 	public List<Word> availableWords = new ArrayList<Word>();
 	public List<Word> completedWords = new ArrayList<Word>();
 	
-	protected String baseWords[];
+	//the dictionary is shared, so it is loaded again rather than kept in a snapshot
+	protected String dictionaryFileName = null;
+	protected transient String baseWords[];
 	protected List<LetterColor> baseColors;
-	protected HashMap<Character, Float> letterProbabilities;
+	protected transient HashMap<Character, Float> letterProbabilities;
+	protected MersenneTwisterFast rand;			//chooses words
+	protected MersenneTwisterFast colorRand;	//chooses the colors of the letters of words
+	protected MersenneTwisterFast letterRand;	//generates random letters
 	
-	public void resetStatistics() {
-		completedWords = new ArrayList<Word>();
+	/**Dictionary is the parsed contents of a dictionary file.  It is never changed once loaded,
+	 * so the same Dictionary is shared by every WordListBase that loads the same file.
+	 */
+	protected static class Dictionary {
+		public String words[];
+		public HashMap<Character, Float> letterProbabilities;
 	}
-
-	/* (non-Javadoc)
-	 * @see alphabetsoup.framework.WordList#generateWordsFromFile(java.lang.String, java.util.List, int)
+	private static HashMap<String, Dictionary> dictionaries = new HashMap<String, Dictionary>();
+	
+	/**Constructs an empty WordListBase.
+	 * @param rand random number generator of the simulation the words belong to
 	 */
-	public void generateWordsFromFile(String filename, List<LetterColor> colors, int num_words) {
+	public WordListBase(MersenneTwisterFast rand) {
+		this(rand, rand, rand);
+	}
+	
+	/**Constructs an empty WordListBase which uses separate random number streams for each purpose.
+	 * @param word_rand random number generator to choose words with
+	 * @param color_rand random number generator to choose the colors of the letters of words with
+	 * @param letter_rand random number generator for generateRandomLetter
+	 */
+	public WordListBase(MersenneTwisterFast word_rand, MersenneTwisterFast color_rand, MersenneTwisterFast letter_rand) {
+		rand = word_rand;
+		colorRand = color_rand;
+		letterRand = letter_rand;
+	}
+	
+	/**Loads the specified dictionary file, or returns the copy already loaded.
+	 * @param filename dictionary file to load
+	 * @return the parsed dictionary, null if the file could not be opened
+	 */
+	protected static synchronized Dictionary loadDictionary(String filename) {
+		Dictionary d = dictionaries.get(filename);
+		if(d != null) return d;
+		
 		//open file to get words
 		String content;
 		try {
@@ -42,37 +74,68 @@ public class WordListBase implements WordList {
 			int x= fis.available();
 			byte b[]= new byte[x];
 			fis.read(b);
+			fis.close();
 			content = new String(b);
 		}
 		catch (Throwable e) {
 			System.out.println("Could not open file " + filename);
-			return;
+			return null;
 		}
-
-		//store info to build more new words
-		baseWords = content.split("(\r\n)|\n|\r");	//split on any newline combo
-		baseColors = colors;
+		
+		d = new Dictionary();
+		d.words = content.split("(\r\n)|\n|\r");	//split on any newline combo
 		
 		//compute letter probabilities based on word set
-		letterProbabilities = new HashMap<Character, Float>();
+		d.letterProbabilities = new HashMap<Character, Float>();
 		int number_of_letters = 0;
-		for(String s : baseWords) {
+		for(String s : d.words) {
 			for(char c : s.toCharArray()) {
 				number_of_letters++;
-				if(letterProbabilities.containsKey(c))
-					letterProbabilities.put(c, letterProbabilities.get(c) + 1.0f);
+				if(d.letterProbabilities.containsKey(c))
+					d.letterProbabilities.put(c, d.letterProbabilities.get(c) + 1.0f);
 				else
-					letterProbabilities.put(c, 1.0f);
+					d.letterProbabilities.put(c, 1.0f);
 			}
 		}
 		//normalize probabilities
-		for(char c :letterProbabilities.keySet())
-			letterProbabilities.put(c, letterProbabilities.get(c) / number_of_letters);
+		for(char c : d.letterProbabilities.keySet())
+			d.letterProbabilities.put(c, d.letterProbabilities.get(c) / number_of_letters);
+		
+		dictionaries.put(filename, d);
+		return d;
+	}
+	
+	/**Restores a WordListBase from a snapshot, reloading the dictionary it was using.
+	 */
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		if(dictionaryFileName == null) return;
+		Dictionary d = loadDictionary(dictionaryFileName);
+		if(d == null) throw new IOException("could not reload dictionary " + dictionaryFileName);
+		baseWords = d.words;
+		letterProbabilities = d.letterProbabilities;
+	}
+	
+	public void resetStatistics() {
+		completedWords = new ArrayList<Word>();
+	}
+
+	/* (non-Javadoc)
+	 * @see alphabetsoup.framework.WordList#generateWordsFromFile(java.lang.String, java.util.List, int)
+	 */
+	public void generateWordsFromFile(String filename, List<LetterColor> colors, int num_words) {
+		Dictionary d = loadDictionary(filename);
+		if(d == null) return;
+
+		//store info to build more new words (the dictionary is shared, so these must not be modified)
+		dictionaryFileName = filename;
+		baseWords = d.words;
+		baseColors = colors;
+		letterProbabilities = d.letterProbabilities;
 		
 		//build initial list
-		MersenneTwisterFast rand = SimulationWorld.rand;
 		for(int i = 0; i < num_words; i++) {
-			Word w = new Word(baseWords[rand.nextInt(baseWords.length)], baseColors);
+			Word w = new Word(baseWords[rand.nextInt(baseWords.length)], baseColors, colorRand);
 			words.add(w);
 			availableWords.add(w);
 		}
@@ -83,8 +146,7 @@ public class WordListBase implements WordList {
 	 */
 	public Word takeAvailableWord(int index) {
 		//add a new word on to the end
-		MersenneTwisterFast rand = SimulationWorld.rand;
-		Word w = new Word(baseWords[rand.nextInt(baseWords.length)], baseColors);
+		Word w = new Word(baseWords[rand.nextInt(baseWords.length)], baseColors, colorRand);
 		words.add(w);
 		availableWords.add(w);
 
@@ -98,10 +160,8 @@ public class WordListBase implements WordList {
 	 */
 	public Letter generateRandomLetter() 
 	{
-		MersenneTwisterFast rand = SimulationWorld.rand;
-		
 		//get color based on distribution
-		float r = rand.nextFloat();
+		float r = letterRand.nextFloat();
 		//chose a default one just incase
 		int chosen_color = 0;
 		
@@ -116,7 +176,7 @@ public class WordListBase implements WordList {
 		}
 		
 		//now get letter based on distribution
-		r = rand.nextFloat();
+		r = letterRand.nextFloat();
 		//chose a default one just incase
 		char chosen_letter = 'a';
 		
@@ -3,6 +3,7 @@
  */
 package alphabetsoup.base;
 
+import java.io.Serializable;
 import java.util.*;
 
 import alphabetsoup.framework.*;
@@ -12,7 +13,10 @@ import alphabetsoup.framework.*;
  * and can be assigned new words when space permits.
  * @author Chris Hazard
  */
-public class WordStationBase extends Circle implements WordStation, Updateable {
+public class WordStationBase extends Circle implements WordStation, Updateable, Schedulable {
+	private static final long serialVersionUID = 1L;
+	
+	protected SimulationWorld simulationWorld;	//simulation the station is in
 	private int capacity;
 	private float bucketToLetterTime;
 	private float wordCompletionTime;
@@ -28,7 +32,9 @@ public class WordStationBase extends Circle implements WordStation, Updateable {
 		idleTime = 0.0;
 	}
 	
-	protected static class LetterRequested {
+	protected static class LetterRequested implements Serializable {
+		private static final long serialVersionUID = 1L;
+		
 		public LetterRequested(Bucketbot bb, Letter l, Word w) {
 			bucketbot = bb;	letter = l; word = w;	
 		}
@@ -38,8 +44,9 @@ public class WordStationBase extends Circle implements WordStation, Updateable {
 	}
 	List<LetterRequested> letterTakesRequested = new ArrayList<LetterRequested>();
 
-	public WordStationBase(float station_radius, float bucket_to_letter_time, float word_completion_time, int station_capacity) {
+	public WordStationBase(SimulationWorld sw, float station_radius, float bucket_to_letter_time, float word_completion_time, int station_capacity) {
 		super(station_radius);
+		simulationWorld = sw;
 		resetStatistics();
 		bucketToLetterTime = bucket_to_letter_time;
 		wordCompletionTime = word_completion_time;
@@ -74,6 +81,15 @@ public class WordStationBase extends Circle implements WordStation, Updateable {
 			return blockedUntilTime;
 	}
 
+	/* (non-Javadoc)
+	 * @see alphabetsoup.framework.Schedulable#getNextUpdateTime(double)
+	 */
+	public double getNextUpdateTime(double cur_time) {
+		//update does nothing while blocked
+		if(cur_time < blockedUntilTime) return blockedUntilTime;
+		return cur_time;
+	}
+
 	/* (non-Javadoc)
 	 * @see alphabetsoup.framework.Updateable#update(double, double)
 	 */
@@ -149,7 +165,7 @@ public class WordStationBase extends Circle implements WordStation, Updateable {
 		for(int w = assignedWords.size()-1; w >= 0; w--)
 			if(assignedWords.get(w).isCompleted()) {
 				Word completed = assignedWords.get(w);
-				SimulationWorld.getSimulationWorld().getWordList().completedWord(completed);
+				simulationWorld.getWordList().completedWord(completed);
 				assignedWords.remove(w);
 
 				//exit early and block action
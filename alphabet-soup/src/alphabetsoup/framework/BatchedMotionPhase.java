@@ -0,0 +1,291 @@
+/**
+ *
+ */
+package alphabetsoup.framework;
+
+import java.io.Serializable;
+import java.util.*;
+
+/**BatchedMotionPhase moves all of the Bucketbots on the Map for one time step in a single batch.
+ * Before any Bucketbot moves, one sort-and-sweep pass finds every pair of Bucketbots which could collide within
+ * the step: each Bucketbot is given a box around it, as wide as it could travel in the step, the boxes are kept
+ * sorted by their left edges, and each box only needs to be compared with those that start before its right edge.
+ * The Buckets are kept sorted by x as well, so the Buckets which a carried Bucket could hit are found with a
+ * binary search rather than by comparing against every Bucket.<br>
+ * The Bucketbots are then moved in order, and while they are, Map.moveBucketbot checks each move only
+ * against the objects found for it rather than walking the spatial indices, which are brought up to date
+ * afterward.  The sort orders are kept from step to step, and since things move little in a step, they are
+ * nearly sorted already and take about linear time to re-sort.  The result is the same as moving the Bucketbots
+ * one at a time in order, and then letting everything act, as the ParallelMotionPhase does with a single tile.
+ */
+public class BatchedMotionPhase implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	private Map map;
+
+	//the bucketbots, their boxes for the current step, and their indices sorted by the left edges of the boxes
+	private Bucketbot bucketbots[] = new Bucketbot[0];
+	private IdentityHashMap<Circle, Integer> bucketbotIndices = new IdentityHashMap<Circle, Integer>();
+	private float minX[] = new float[0], maxX[] = new float[0], minY[] = new float[0], maxY[] = new float[0];
+	private int sortedBucketbots[] = new int[0];
+
+	//the buckets sorted by x
+	private Circle sortedBuckets[] = new Circle[0];
+	private float bucketX[] = new float[0];
+	private float largestBucketRadius = 0.0f;
+
+	//for each bucketbot, the other bucketbots it could hit, and the buckets its bucket could hit
+	private int bucketbotCandidates[][] = new int[0][];
+	private int numBucketbotCandidates[] = new int[0];
+	private Circle bucketCandidates[][] = new Circle[0][];
+	private int numBucketCandidates[] = new int[0];
+
+	//positions at the start of the step, so the spatial indices can be updated afterward
+	private float oldX[] = new float[0], oldY[] = new float[0];
+	private Circle oldBucket[] = new Circle[0];
+
+	/**Constructs a BatchedMotionPhase for the specified map.
+	 * @param m Map the Bucketbots are on
+	 */
+	public BatchedMotionPhase(Map m) {
+		map = m;
+	}
+
+	/**Moves each of the Bucketbots which are PhasedUpdateable by calling updateMotion.
+	 * Bucketbots which aren't PhasedUpdateable are left for the caller to update.
+	 * @param bucketbots all of the Bucketbots on the map, in the order they should be moved
+	 * @param last_time absolute time all objects were last updated
+	 * @param cur_time current system time to update to
+	 */
+	public void moveBucketbots(Bucketbot bucketbots[], double last_time, double cur_time) {
+		if(!Arrays.equals(this.bucketbots, bucketbots)) setBucketbots(bucketbots);
+		if(sortedBuckets.length != map.getBuckets().size()) setBuckets(map.getBuckets());
+
+		//nothing can get more than this far from where it started within the step
+		float max_travel = (float)(map.getMaxVelocity() * (cur_time - last_time));
+
+		for(int i = 0; i < bucketbots.length; i++) {
+			Circle c = (Circle)bucketbots[i];
+			float reach = c.getRadius() + max_travel;
+			minX[i] = c.getX() - reach;	maxX[i] = c.getX() + reach;
+			minY[i] = c.getY() - reach;	maxY[i] = c.getY() + reach;
+			numBucketbotCandidates[i] = 0;
+			numBucketCandidates[i] = 0;
+			oldX[i] = c.getX();
+			oldY[i] = c.getY();
+			oldBucket[i] = (Circle)bucketbots[i].getBucket();
+		}
+
+		//sweep along x, only comparing boxes which overlap in x
+		sortBucketbots();
+		for(int a = 0; a < sortedBucketbots.length; a++) {
+			int i = sortedBucketbots[a];
+			for(int b = a + 1; b < sortedBucketbots.length && minX[sortedBucketbots[b]] <= maxX[i]; b++) {
+				int j = sortedBucketbots[b];
+				if(minY[j] > maxY[i] || minY[i] > maxY[j])
+					continue;
+				addBucketbotCandidate(i, j);
+				addBucketbotCandidate(j, i);
+			}
+		}
+
+		//find the buckets near each carried bucket, allowing for both to move
+		sortBuckets();
+		for(int i = 0; i < bucketbots.length; i++) {
+			Circle b = oldBucket[i];
+			if(b == null) continue;
+			float reach = b.getRadius() + largestBucketRadius + 2 * max_travel;
+			for(int k = findFirstBucket(b.getX() - reach); k < sortedBuckets.length && bucketX[k] <= b.getX() + reach; k++) {
+				Circle o = sortedBuckets[k];
+				if(o != b && Math.abs(o.getY() - b.getY()) <= reach)
+					addBucketCandidate(i, o);
+			}
+		}
+
+		map.batchedMotionPhase = this;
+		try {
+			for(Bucketbot r : bucketbots)
+				if(r instanceof PhasedUpdateable)
+					((PhasedUpdateable)r).updateMotion(last_time, cur_time);
+		}
+		finally {
+			map.batchedMotionPhase = null;
+		}
+
+		//put everything that moved into its new place in the spatial indices
+		for(int i = 0; i < bucketbots.length; i++) {
+			Circle c = (Circle)bucketbots[i];
+			if(c.getX() == oldX[i] && c.getY() == oldY[i])
+				continue;
+			float x_new = c.getX(), y_new = c.getY();
+			c.setX(oldX[i]);	c.setY(oldY[i]);
+			map.bucketbotIndex.moveTo(c, x_new, y_new);
+			if(oldBucket[i] != null) {
+				oldBucket[i].setX(oldX[i]);	oldBucket[i].setY(oldY[i]);
+				map.bucketIndex.moveTo(oldBucket[i], x_new, y_new);
+			}
+		}
+	}
+
+	/**Called by Map.moveBucketbot while the Bucketbots are being moved.  Does the same as Map.moveBucketbot,
+	 * except that it only checks the objects found by the sweep, and doesn't update the spatial indices.
+	 * The map boundaries must already have been checked.
+	 * @param r bucketbot to move
+	 * @param x_new new x position
+	 * @param y_new new y position
+	 * @return true if the move is valid and was made
+	 */
+	boolean moveBucketbot(Bucketbot r, float x_new, float y_new) {
+		Circle c = (Circle)r;
+		Circle b = (Circle)r.getBucket();
+		int i = bucketbotIndices.get(c);
+
+		for(int k = 0; k < numBucketbotCandidates[i]; k++) {
+			Circle o = (Circle)bucketbots[bucketbotCandidates[i][k]];
+			if(o.IsCollision(x_new, y_new, c.getRadius()))
+				return false;
+		}
+		if(b != null)
+			for(int k = 0; k < numBucketCandidates[i]; k++) {
+				Circle o = bucketCandidates[i][k];
+				if(o != b && o.IsCollision(x_new, y_new, b.getRadius()))
+					return false;
+			}
+
+		placeBucketbot(r, x_new, y_new);
+		return true;
+	}
+
+	/**Called by Map.getBucketbotFirstContact while the Bucketbots are being moved.  Does the same as
+	 * Map.getBucketbotFirstContact, except that it only checks the objects found by the sweep.
+	 * @param r bucketbot to move
+	 * @param x_new new x position
+	 * @param y_new new y position
+	 * @param last_time time the move starts at
+	 * @param cur_time time the move ends at
+	 * @return fraction of the move (0 to 1) at the first contact, or Float.POSITIVE_INFINITY if there is none
+	 */
+	float getFirstContact(Bucketbot r, float x_new, float y_new, double last_time, double cur_time) {
+		Circle c = (Circle)r;
+		Circle b = (Circle)r.getBucket();
+		int i = bucketbotIndices.get(c);
+		float first = Float.POSITIVE_INFINITY;
+
+		for(int k = 0; k < numBucketbotCandidates[i]; k++) {
+			Circle o = (Circle)bucketbots[bucketbotCandidates[i][k]];
+			first = Math.min(first, o.getContactFraction(c.getRadius(), c.getX(), c.getY(), x_new, y_new, last_time, cur_time));
+		}
+		if(b != null)
+			for(int k = 0; k < numBucketCandidates[i]; k++) {
+				Circle o = bucketCandidates[i][k];
+				if(o != b)
+					first = Math.min(first, o.getContactFraction(b.getRadius(), b.getX(), b.getY(), x_new, y_new, last_time, cur_time));
+			}
+		return first;
+	}
+
+	/**Called by Map while the Bucketbots are being moved to put a Bucketbot (and its Bucket) at its new position,
+	 * without updating the spatial indices.
+	 * @param r bucketbot to move
+	 * @param x_new new x position
+	 * @param y_new new y position
+	 */
+	void placeBucketbot(Bucketbot r, float x_new, float y_new) {
+		Circle c = (Circle)r;
+		Circle b = (Circle)r.getBucket();
+		c.setX(x_new);	c.setY(y_new);
+		if(b != null) {
+			b.setX(x_new);	b.setY(y_new);
+		}
+	}
+
+	/**Sets up the arrays for a new set of bucketbots.
+	 */
+	private void setBucketbots(Bucketbot bucketbots[]) {
+		int n = bucketbots.length;
+		this.bucketbots = bucketbots.clone();
+		bucketbotIndices.clear();
+		for(int i = 0; i < n; i++)
+			bucketbotIndices.put((Circle)bucketbots[i], i);
+		minX = new float[n];	maxX = new float[n];	minY = new float[n];	maxY = new float[n];
+		sortedBucketbots = new int[n];
+		for(int i = 0; i < n; i++)
+			sortedBucketbots[i] = i;
+		bucketbotCandidates = new int[n][4];
+		numBucketbotCandidates = new int[n];
+		bucketCandidates = new Circle[n][4];
+		numBucketCandidates = new int[n];
+		oldX = new float[n];	oldY = new float[n];
+		oldBucket = new Circle[n];
+	}
+
+	/**Sets up the arrays for a new set of buckets.
+	 */
+	private void setBuckets(List<Bucket> buckets) {
+		sortedBuckets = new Circle[buckets.size()];
+		bucketX = new float[buckets.size()];
+		largestBucketRadius = 0.0f;
+		for(int i = 0; i < sortedBuckets.length; i++) {
+			sortedBuckets[i] = (Circle)buckets.get(i);
+			largestBucketRadius = Math.max(largestBucketRadius, sortedBuckets[i].getRadius());
+		}
+	}
+
+	/**Insertion sorts the bucketbots by the left edges of their boxes, starting from the order of the last step.
+	 */
+	private void sortBucketbots() {
+		for(int a = 1; a < sortedBucketbots.length; a++) {
+			int i = sortedBucketbots[a];
+			int b = a - 1;
+			for(; b >= 0 && minX[sortedBucketbots[b]] > minX[i]; b--)
+				sortedBucketbots[b + 1] = sortedBucketbots[b];
+			sortedBucketbots[b + 1] = i;
+		}
+	}
+
+	/**Insertion sorts the buckets by x, starting from the order of the last step.
+	 */
+	private void sortBuckets() {
+		for(int a = 0; a < sortedBuckets.length; a++)
+			bucketX[a] = sortedBuckets[a].getX();
+		for(int a = 1; a < sortedBuckets.length; a++) {
+			Circle c = sortedBuckets[a];
+			float x = bucketX[a];
+			int b = a - 1;
+			for(; b >= 0 && bucketX[b] > x; b--) {
+				sortedBuckets[b + 1] = sortedBuckets[b];
+				bucketX[b + 1] = bucketX[b];
+			}
+			sortedBuckets[b + 1] = c;
+			bucketX[b + 1] = x;
+		}
+	}
+
+	/**Returns the index of the first bucket in sortedBuckets with an x of at least x.
+	 */
+	private int findFirstBucket(float x) {
+		int low = 0, high = sortedBuckets.length;
+		while(low < high) {
+			int mid = (low + high) >>> 1;
+			if(bucketX[mid] < x) low = mid + 1;
+			else high = mid;
+		}
+		return low;
+	}
+
+	private void addBucketbotCandidate(int i, int j) {
+		int n = numBucketbotCandidates[i];
+		if(n == bucketbotCandidates[i].length)
+			bucketbotCandidates[i] = Arrays.copyOf(bucketbotCandidates[i], 2 * n);
+		bucketbotCandidates[i][n] = j;
+		numBucketbotCandidates[i] = n + 1;
+	}
+
+	private void addBucketCandidate(int i, Circle o) {
+		int n = numBucketCandidates[i];
+		if(n == bucketCandidates[i].length)
+			bucketCandidates[i] = Arrays.copyOf(bucketCandidates[i], 2 * n);
+		bucketCandidates[i][n] = o;
+		numBucketCandidates[i] = n + 1;
+	}
+}
@@ -71,6 +71,12 @@ public interface Bucketbot {
 	 */
 	public Bucket getBucket();
 	
+	/**
+	 * @return Returns the time the Bucketbot's position is current as of.  When it is next moved, it is moved
+	 * over all of the time since then, so with local time stepping it may have some catching up to do.
+	 */
+	public double getPositionTime();
+	
 	/**
 	 * @return Returns the number of times the Bucketbot has picked up a Bucket.
 	 */
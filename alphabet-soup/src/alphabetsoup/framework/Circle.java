@@ -3,15 +3,23 @@
  */
 package alphabetsoup.framework;
 
+import java.io.Serializable;
+
 /**Class Circle implements a circle in 2D space and functions to determine its
  * relation to other geometric shapes (such as collisions with rectangles and circles) 
  * @author Chris Hazard
  */
-public class Circle {
+public class Circle implements Serializable {
+	private static final long serialVersionUID = 1L;
 	
 	private float x = Float.NaN, y = Float.NaN;	//start out at a non-existant location
 	float radius;
 	boolean isMoving;	//set to true if the circle is currently moving (to check for collisions) 
+	transient QuadtreeNode quadtreeLeaf = null;	//leaf holding it, if it is in a Quadtree (null after a restore until it is next added)
+	int spatialIndexSlot = -1;	//index in the arrays of the QuadtreeNode or cell holding it; a Circle may only be in one SpatialIndex
+	//where it was before its last move with swept collisions, and the times that move was over
+	private float moveFromX, moveFromY;
+	private double moveStartTime = Double.NaN, moveEndTime = Double.NaN;
 	
 	/**Constructs a circle with the given radius at location 0,0.
 	 * @param circle_radius Radius of the circle
@@ -82,6 +90,69 @@ public class Circle {
 		return getDistance(c.getX(), c.getY());
 	}
 	
+	/**Returns how far along the straight move of a circle from (x_from,y_from) to (x_to,y_to) it first touches
+	 * a circle at (other_x,other_y), as a fraction of the move.  If the circles already overlap at the start of the
+	 * move, it is 0 if the move brings them closer, and they don't touch if the move takes them apart.
+	 * @param other_x x position of the other circle
+	 * @param other_y y position of the other circle
+	 * @param radius_sum sum of the radii of the two circles
+	 * @param x_from x position the moving circle starts at
+	 * @param y_from y position the moving circle starts at
+	 * @param x_to x position the moving circle ends at
+	 * @param y_to y position the moving circle ends at
+	 * @return fraction of the move (0 to 1) at first contact, or Float.POSITIVE_INFINITY if they don't touch
+	 */
+	public static float getContactFraction(float other_x, float other_y, float radius_sum,
+			float x_from, float y_from, float x_to, float y_to) {
+		//solve |from + t*(to - from) - other| = radius_sum for the smallest t
+		float dx = x_to - x_from, dy = y_to - y_from;
+		float fx = x_from - other_x, fy = y_from - other_y;
+		float b = fx * dx + fy * dy;
+		float c = fx * fx + fy * fy - radius_sum * radius_sum;
+		if(c <= 0.0f)
+			return (b < 0.0f) ? 0.0f : Float.POSITIVE_INFINITY;
+		float a = dx * dx + dy * dy;
+		float discriminant = b * b - a * c;
+		if(b >= 0.0f || discriminant < 0.0f)	//moving away, or passing by without touching
+			return Float.POSITIVE_INFINITY;
+		float t = (float)((-b - Math.sqrt(discriminant)) / a);
+		return (t <= 1.0f) ? t : Float.POSITIVE_INFINITY;
+	}
+	
+	/**Records that the circle is about to be moved from where it is over the time from start_time to end_time,
+	 * so that circles moved later over the same time can be checked against its whole path.
+	 * @param start_time time the move starts at
+	 * @param end_time time the move ends at
+	 */
+	void recordMove(double start_time, double end_time) {
+		moveFromX = x;	moveFromY = y;
+		moveStartTime = start_time;	moveEndTime = end_time;
+	}
+	
+	/**Returns how far along the straight move of another circle from (x_from,y_from) to (x_to,y_to), over the time
+	 * from start_time to end_time, it first touches this circle, as a fraction of the move.  If this circle was moved
+	 * over the same time (see recordMove), both are taken to move in straight lines at once, and the move of the other
+	 * is swept relative to this one's, so that paths which cross are found even if the ends don't touch.
+	 * Otherwise this circle is taken to stay where it is.
+	 * @param other_radius radius of the other circle
+	 * @param x_from x position the other circle starts at
+	 * @param y_from y position the other circle starts at
+	 * @param x_to x position the other circle ends at
+	 * @param y_to y position the other circle ends at
+	 * @param start_time time the move starts at
+	 * @param end_time time the move ends at
+	 * @return fraction of the move (0 to 1) at first contact, or Float.POSITIVE_INFINITY if they don't touch
+	 */
+	public float getContactFraction(float other_radius, float x_from, float y_from, float x_to, float y_to,
+			double start_time, double end_time) {
+		float x_start = x, y_start = y;
+		if(moveStartTime == start_time && moveEndTime == end_time) {
+			x_start = moveFromX;	y_start = moveFromY;
+		}
+		return getContactFraction(0.0f, 0.0f, radius + other_radius,
+				x_from - x_start, y_from - y_start, x_to - x, y_to - y);
+	}
+	
 	/**Returns true if the circle overlaps with the rectangle specified by (x1,y1) to (x2,y2). 
 	 * @param x1 x position of the top left corner of the rectangle
 	 * @param y1 y position of the top left corner of the rectangle
@@ -130,7 +201,7 @@ public class Circle {
 	}
 
 	/**
-	 * @param radius The radius to set.
+	 * @param radius The radius to set.  Must not be changed while the Circle is in a Quadtree.
 	 */
 	public void setRadius(float radius) {
 		this.radius = radius;
@@ -3,6 +3,7 @@
  */
 package alphabetsoup.framework;
 
+import java.io.Serializable;
 import java.util.*;
 
 import alphabetsoup.base.BucketbotBase;
@@ -12,7 +13,8 @@ import alphabetsoup.base.BucketbotBase;
  * another bucketbot or bucket.  It also provides queries relating to if objects will collide.
  * @author Chris Hazard
  */
-public class Map implements Updateable {
+public class Map implements Updateable, Serializable {
+	private static final long serialVersionUID = 1L;
 	
 	private float width, height;
 	private float tolerance;		//distance between a bucket and a station, etc. where it will still be considered "close enough"
@@ -24,8 +26,22 @@ public class Map implements Updateable {
 	List<LetterStation> letterStations;
 	List<WordStation> wordStations;
 	
-	Quadtree bucketbotQuadtree;
-	Quadtree bucketQuadtree;
+	SpatialIndex bucketbotIndex;
+	SpatialIndex bucketIndex;
+	private UniformGrid stationIndex;	//stations never move, so they are kept apart for checking bucket storage locations
+	
+	transient ParallelMotionPhase parallelMotionPhase = null;	//set while bucketbots are being moved in parallel
+	transient BatchedMotionPhase batchedMotionPhase = null;		//set while bucketbots are being moved in a batch
+	private transient ArrayList<Circle> nearbyObjects = null;	//reused by getShortestTimeWithoutCollision
+	private float maxBucketbotVelocity = 0.001f;	//fastest maximum velocity of any bucketbot, starting non-zero
+	private boolean sweptCollisions = false;		//check the whole path of each move for collisions, not just where it ends
+	//fraction of its radius that a bucketbot stops short of what it would hit with swept collisions
+	public final static float contactGap = 0.01f;
+	
+	/**Fraction of the sum of the diameters of two objects they may close by, beyond the gap between them,
+	 * within one step of the simulation.  Being less than 1, they can't pass through each other unseen.
+	 */
+	public final static float passFraction = 0.9f;
 
 	/**Constructs a map with given dimensions and tolerance
 	 * @param map_width width of the map
@@ -35,6 +51,21 @@ public class Map implements Updateable {
 	 * @param max_velocity maximum velocity of anything on the map
 	 */
 	public Map(float map_width, float map_height, float map_tolerance, float max_acceleration, float max_velocity) 
+	{
+		this(map_width, map_height, map_tolerance, max_acceleration, max_velocity, Quadtree.class.getName());
+	}
+
+	/**Constructs a map with given dimensions and tolerance, keeping its bucketbots and buckets
+	 * in the given kind of SpatialIndex.
+	 * @param map_width width of the map
+	 * @param map_height height of the map
+	 * @param map_tolerance tolerance for Buckets to be picked up by Bucketbots
+	 * @param max_acceleration maximum acceleration of anything on the map
+	 * @param max_velocity maximum velocity of anything on the map
+	 * @param spatial_index_class name of the SpatialIndex class, such as alphabetsoup.framework.Quadtree
+	 */
+	public Map(float map_width, float map_height, float map_tolerance, float max_acceleration, float max_velocity,
+			String spatial_index_class) 
 	{
 		width = map_width;	height = map_height;	tolerance = map_tolerance;
 		maxAcceleration = max_acceleration;
@@ -44,8 +75,9 @@ public class Map implements Updateable {
 		letterStations = new ArrayList<LetterStation>();
 		wordStations = new ArrayList<WordStation>();
 		
-		bucketbotQuadtree = new Quadtree(map_width, map_height);
-		bucketQuadtree = new Quadtree(map_width, map_height);
+		bucketbotIndex = (SpatialIndex)SimulationWorld.createClass(spatial_index_class, map_width, map_height);
+		bucketIndex = (SpatialIndex)SimulationWorld.createClass(spatial_index_class, map_width, map_height);
+		stationIndex = new UniformGrid(map_width, map_height);
 	}
 
 	/**Adds a Bucketbot to the map and gives the Bucketbot a reference to the Map.
@@ -56,7 +88,8 @@ public class Map implements Updateable {
 	{	
 		if(!isBucketbotMoveValid(r, r.getX(), r.getY())) return false;
 		bucketbots.add(r);
-		bucketbotQuadtree.addCircleObject((Circle)r);
+		bucketbotIndex.addCircleObject((Circle)r);
+		maxBucketbotVelocity = Math.max(maxBucketbotVelocity, r.getMaxVelocity());
 		return true;
 	}
 	
@@ -68,22 +101,67 @@ public class Map implements Updateable {
 	{
 		if(!isValidBucketStorageLocation(b, b.getX(), b.getY())) return false;
 		buckets.add(b);
-		bucketQuadtree.addCircleObject((Circle)b);
+		bucketIndex.addCircleObject((Circle)b);
 		return true;
 	}
 	
-	/**Adds a LetterStation to the map.
+	/**Adds a batch of Bucketbots to the map, as when setting up a layout.  Each is placed if it could be placed
+	 * by addRobot after those before it, but the spatial index is built once for all of them.
+	 * @param new_bucketbots	Bucketbots to add, in order
+	 * @return		Returns the number of Bucketbots which could be and have been placed
+	 */
+	public int addRobots(List<? extends Bucketbot> new_bucketbots) 
+	{
+		//the ones placed so far from the batch aren't in the index yet, so check against them separately
+		// (this grid is thrown away, and they take their places in the index when they are added to it)
+		UniformGrid placed = new UniformGrid(width, height);
+		List<Circle> circles = new ArrayList<Circle>();
+		for(Bucketbot r : new_bucketbots) {
+			if(!isBucketbotMoveValid(r, r.getX(), r.getY()) || !placed.isValidMove((Circle)r, r.getX(), r.getY())) continue;
+			placed.addCircleObject((Circle)r);
+			circles.add((Circle)r);
+			bucketbots.add(r);
+			maxBucketbotVelocity = Math.max(maxBucketbotVelocity, r.getMaxVelocity());
+		}
+		bucketbotIndex.addCircleObjects(circles);
+		return circles.size();
+	}
+	
+	/**Adds a batch of Buckets to the map, as when setting up a layout.  Each is placed if it could be placed
+	 * by addBucket after those before it, but the spatial index is built once for all of them.
+	 * @param new_buckets	Buckets to add, in order
+	 * @return		Returns the number of Buckets which could be and have been placed
+	 */
+	public int addBuckets(List<? extends Bucket> new_buckets) 
+	{
+		//the ones placed so far from the batch aren't in the index yet, so check against them separately
+		// (this grid is thrown away, and they take their places in the index when they are added to it)
+		UniformGrid placed = new UniformGrid(width, height);
+		List<Circle> circles = new ArrayList<Circle>();
+		for(Bucket b : new_buckets) {
+			if(!isValidBucketStorageLocation(b, b.getX(), b.getY()) || !placed.isValidMove((Circle)b, b.getX(), b.getY())) continue;
+			placed.addCircleObject((Circle)b);
+			circles.add((Circle)b);
+			buckets.add(b);
+		}
+		bucketIndex.addCircleObjects(circles);
+		return circles.size();
+	}
+	
+	/**Adds a LetterStation to the map.  Its position must already be set, as stations are not moved.
 	 * @param s		LetterStation object to add
 	 */
 	public void addLetterStation(LetterStation s) {
 		letterStations.add(s);
+		stationIndex.addCircleObject((Circle)s);
 	}
 	
-	/**Adds a WordStation to the map.
+	/**Adds a WordStation to the map.  Its position must already be set, as stations are not moved.
 	 * @param s		WordStation object to add
 	 */
 	public void addWordStation(WordStation s) {
 		wordStations.add(s);
+		stationIndex.addCircleObject((Circle)s);
 	}
 	
 	/**Returns a Collection of the bucketbots within the specified distance from the point
@@ -94,7 +172,7 @@ public class Map implements Updateable {
 	 */
 	public Collection<Circle> getBucketbotsWithinDistance(float x, float y, float distance) {
 		Circle c = new Circle(distance, x, y);
-		return bucketbotQuadtree.getObjectsWithinCircle(c);
+		return bucketbotIndex.getObjectsWithinCircle(c);
 	}
 	
 	/**Returns a Collection of the buckets within the specified distance from the point
@@ -105,7 +183,31 @@ public class Map implements Updateable {
 	 */
 	public Collection<Circle> getBucketsWithinDistance(float x, float y, float distance) {
 		Circle c = new Circle(distance, x, y);
-		return bucketQuadtree.getObjectsWithinCircle(c);
+		return bucketIndex.getObjectsWithinCircle(c);
+	}
+	
+	/**Adds the bucketbots within the specified distance from the point to a list.  Allocates nothing, so the
+	 * same list can be cleared and reused for every query.
+	 * @param x x coordinate of center to find bucketbots
+	 * @param y y coordinate of center to find bucketbots
+	 * @param distance from (x,y)
+	 * @param excluded bucketbot to leave out (such as the one asking), or null
+	 * @param in_view list to add the bucketbots to
+	 */
+	public void getBucketbotsWithinDistance(float x, float y, float distance, Circle excluded, List<Circle> in_view) {
+		bucketbotIndex.getObjectsWithinDistance(x, y, distance, excluded, in_view);
+	}
+	
+	/**Adds the buckets within the specified distance from the point to a list.  Allocates nothing, so the
+	 * same list can be cleared and reused for every query.
+	 * @param x x coordinate of center to find buckets
+	 * @param y y coordinate of center to find buckets
+	 * @param distance from (x,y)
+	 * @param excluded bucket to leave out (such as the one being carried by the bucketbot asking), or null
+	 * @param in_view list to add the buckets to
+	 */
+	public void getBucketsWithinDistance(float x, float y, float distance, Circle excluded, List<Circle> in_view) {
+		bucketIndex.getObjectsWithinDistance(x, y, distance, excluded, in_view);
 	}
 	
 	/**Returns true if moving the bucketbot to the new location is valid.
@@ -120,16 +222,89 @@ public class Map implements Updateable {
 		if(x_new - r.getRadius() < 0 || x_new + r.getRadius() > getWidth()
 				|| y_new - r.getRadius() < 0 || y_new + r.getRadius() > getHeight() )
 			return false;
-		if(bucketbotQuadtree.isValidMove((Circle)r, x_new, y_new)) {
+		if(bucketbotIndex.isValidMove((Circle)r, x_new, y_new)) {
 			if(r.getBucket() == null)
 				return true;
 
-			if(bucketQuadtree.isValidMove((Circle)r.getBucket(), x_new, y_new))
+			if(bucketIndex.isValidMove((Circle)r.getBucket(), x_new, y_new))
 				return true;
 		}
 		return false;
 	}
 
+	/**Finds how far the bucketbot can move in a straight line toward a new location over the time from last_time
+	 * to cur_time before it first touches another bucketbot, or before the bucket it is carrying first touches
+	 * another bucket.  Bucketbots already moved by moveBucketbotUntilContact over the same time are taken to have
+	 * moved in straight lines along with it, so paths that cross are found even when the ends are apart,
+	 * and everything else is taken to stay where it is.  The map boundaries are not checked.
+	 * @param r bucketbot to move
+	 * @param x_new new x position
+	 * @param y_new new y position
+	 * @param last_time time the move starts at
+	 * @param cur_time time the move ends at
+	 * @return fraction of the move (0 to 1) at the first contact, or Float.POSITIVE_INFINITY if there is none
+	 */
+	public float getBucketbotFirstContact(Bucketbot r, float x_new, float y_new, double last_time, double cur_time) {
+		if(parallelMotionPhase != null)
+			return parallelMotionPhase.getFirstContact(r, x_new, y_new, last_time, cur_time);
+		if(batchedMotionPhase != null)
+			return batchedMotionPhase.getFirstContact(r, x_new, y_new, last_time, cur_time);
+		//others moved over the same time could have come from this much farther away
+		float max_travel = (float)(maxVelocity * (cur_time - last_time));
+		float first = bucketbotIndex.getFirstContact((Circle)r, x_new, y_new, max_travel, last_time, cur_time);
+		if(r.getBucket() != null)
+			first = Math.min(first, bucketIndex.getFirstContact((Circle)r.getBucket(), x_new, y_new, max_travel, last_time, cur_time));
+		return first;
+	}
+
+	/**Moves the bucketbot (and bucket if applicable) in a straight line toward a new location over the time from
+	 * last_time to cur_time, checking the whole path for collisions as getBucketbotFirstContact does.
+	 * If anything is in the way, the bucketbot is moved to just short of where it would first touch it, provided
+	 * that shorter move is clear as well, and otherwise it isn't moved at all.  Staying put is always clear,
+	 * since everything moved before it over the same time was checked against where it is.
+	 * The time is recorded with the move, so that bucketbots moved after it are checked against its whole path.
+	 * @param r bucketbot to move
+	 * @param x_new new x position
+	 * @param y_new new y position
+	 * @param last_time time the move starts at
+	 * @param cur_time time the move ends at
+	 * @return fraction of the move made: 1 if it was all made, less if it was cut short by a collision
+	 */
+	public float moveBucketbotUntilContact(Bucketbot r, float x_new, float y_new, double last_time, double cur_time) {
+		if(x_new - r.getRadius() < 0 || x_new + r.getRadius() > getWidth()
+				|| y_new - r.getRadius() < 0 || y_new + r.getRadius() > getHeight() )
+			return 0.0f;
+		Circle c = (Circle)r;
+		Circle b = (Circle)r.getBucket();
+		float fraction = 1.0f;
+		float first = getBucketbotFirstContact(r, x_new, y_new, last_time, cur_time);
+		if(first <= 1.0f) {
+			//stop a little short of the contact, so the two are left apart
+			fraction = first - contactGap * r.getRadius() / c.getDistance(x_new, y_new);
+			if(fraction <= 0.0f)
+				return 0.0f;
+			x_new = c.getX() + fraction * (x_new - c.getX());
+			y_new = c.getY() + fraction * (y_new - c.getY());
+			if(getBucketbotFirstContact(r, x_new, y_new, last_time, cur_time) <= 1.0f)
+				return 0.0f;
+		}
+
+		c.recordMove(last_time, cur_time);
+		if(b != null)
+			b.recordMove(last_time, cur_time);
+		//when moving in parallel or in a batch, the spatial indices are updated afterward
+		if(parallelMotionPhase != null)
+			parallelMotionPhase.placeBucketbot(r, x_new, y_new);
+		else if(batchedMotionPhase != null)
+			batchedMotionPhase.placeBucketbot(r, x_new, y_new);
+		else {
+			if(b != null)
+				bucketIndex.moveTo(b, x_new, y_new);
+			bucketbotIndex.moveTo(c, x_new, y_new);
+		}
+		return fraction;
+	}
+
 	/**Moves the bucketbot to a new location if it is a valid move.  It is just like
 	 * isBucketbotMoveValid, but it actually moves the bucketbot (and bucket if applicable).
 	 * @see alphabetsoup.framework.Map#isBucketbotMoveValid(Bucketbot, float, float)
@@ -142,15 +317,20 @@ public class Map implements Updateable {
 		if(x_new - r.getRadius() < 0 || x_new + r.getRadius() > getWidth()
 				|| y_new - r.getRadius() < 0 || y_new + r.getRadius() > getHeight() )
 			return false;
-		if(bucketbotQuadtree.isValidMove((Circle)r, x_new, y_new)) {
+		//when moving in parallel or in a batch, the spatial indices are updated afterward
+		if(parallelMotionPhase != null)
+			return parallelMotionPhase.moveBucketbot(r, x_new, y_new);
+		if(batchedMotionPhase != null)
+			return batchedMotionPhase.moveBucketbot(r, x_new, y_new);
+		if(bucketbotIndex.isValidMove((Circle)r, x_new, y_new)) {
 			if(r.getBucket() == null) {
-				bucketbotQuadtree.moveTo((Circle)r, x_new, y_new);			
+				bucketbotIndex.moveTo((Circle)r, x_new, y_new);			
 				return true;
 			}
 			
-			if(bucketQuadtree.isValidMove((Circle)r.getBucket(), x_new, y_new)) {
-				bucketQuadtree.moveTo((Circle)r.getBucket(), x_new, y_new);
-				bucketbotQuadtree.moveTo((Circle)r, x_new, y_new);			
+			if(bucketIndex.isValidMove((Circle)r.getBucket(), x_new, y_new)) {
+				bucketIndex.moveTo((Circle)r.getBucket(), x_new, y_new);
+				bucketbotIndex.moveTo((Circle)r, x_new, y_new);			
 				return true;
 			}
 		}
@@ -168,37 +348,127 @@ public class Map implements Updateable {
 		if(x_new - b.getRadius() < 0 || x_new + b.getRadius() > getWidth()
 				|| y_new - b.getRadius() < 0 || y_new + b.getRadius() > getHeight() )
 			return false;
-		if(!bucketQuadtree.isValidMove((Circle)b, x_new, y_new))
+		if(!bucketIndex.isValidMove((Circle)b, x_new, y_new))
 			return false;
 		
-		//make sure not overlapping with any station
-		for(WordStation s : wordStations)
-			if( ((Circle)s).IsCollision(x_new, y_new, b.getRadius()))
-				return false;
-		for(LetterStation s : letterStations)
-			if( ((Circle)s).IsCollision(x_new, y_new, b.getRadius()))
-				return false;
-		
-		return true;		
+		//make sure not overlapping with any station, only looking at those near the location
+		return stationIndex.isValidMove((Circle)b, x_new, y_new);		
 	}
 	
-	/**Returns the shortest amount of time that bucketbots will operate until the next possible collision.
-	 * @return shortest possible time until next collision 
+	/**Returns the time the fastest bucketbot takes to cover most (0.9) of the diameter of a bucketbot,
+	 * such that bucketbots don't "tunnel" through each other, regardless of where they are.
+	 * @return shortest possible time until next collision
 	 */
 	public float getShortestTimeWithoutCollision() {
-		//TODO revisit this minimal timing code
-		//float min_dist = bucketbotQuadtree.getShortestDistanceWithoutCollision();
-		//min_dist = Math.min(min_dist, bucketQuadtree.getShortestDistanceWithoutCollision());
+		float diam = 1.8f * ((BucketbotBase)bucketbots.get(0)).getRadius();
+		return diam / maxBucketbotVelocity;
+	}
+	
+	/**Returns the longest time all of the bucketbots can be moved for at once without any two of them
+	 * (or a carried bucket and any other bucket) being able to "tunnel" through each other.  That is, the
+	 * time it would take each pair heading straight toward each other at their maximum velocities to close
+	 * the gap between them, plus passFraction of the sum of their diameters.  Any collision within that time
+	 * leaves them overlapping, so it is found at the end of the step.  Pairs which are touching give the time
+	 * for a bucketbot to cover passFraction of its diameter, and pairs which are far apart give longer times,
+	 * so the steps can be much longer when the bucketbots are spread out.<br>
+	 * The pairs are found with the spatial indices, only looking as far as could matter for the shortest time so far.
+	 * Buckets other than the one a bucketbot is carrying are assumed to be able to move at the maximum velocity of the map.
+	 * @param max_time longest time to look ahead
+	 * @return shortest time until the bucketbots could pass through each other, no more than max_time
+	 */
+	public double getShortestTimeWithoutCollision(double max_time) {
+		if(nearbyObjects == null) nearbyObjects = new ArrayList<Circle>();
+		double min_time = max_time;
+		for(int i = 0; i < bucketbots.size(); i++) {
+			Bucketbot r = bucketbots.get(i);
+			Circle c = (Circle)r;
+			float speed = r.getMaxVelocity();
+			
+			//while [ac|de]celerating, velocity only changes on updates, so keep the steps as short as the time to
+			// cover most of its diameter (as local time stepping does) or it won't accurately reach its goals
+			if(r instanceof BucketbotBase && ((BucketbotBase)r).getTargetSpeedDifference() > 0.0f)
+				min_time = Math.min(min_time, passFraction * 2 * c.getRadius() / speed);
+
+			//nothing farther away than the fastest closing speed could cover can make the time any shorter
+			nearbyObjects.clear();
+			bucketbotIndex.getObjectsWithinDistance(c.getX(), c.getY(), (float)((speed + maxVelocity) * min_time), c, nearbyObjects);
+			for(int j = 0; j < nearbyObjects.size(); j++) {
+				Circle o = nearbyObjects.get(j);
+				min_time = Math.min(min_time, getTimeToPass(c, o, speed + ((Bucketbot)o).getMaxVelocity()));
+			}
+
+			if(r.getBucket() == null) continue;
+			Circle b = (Circle)r.getBucket();
+			nearbyObjects.clear();
+			bucketIndex.getObjectsWithinDistance(b.getX(), b.getY(), (float)((speed + maxVelocity) * min_time), b, nearbyObjects);
+			for(int j = 0; j < nearbyObjects.size(); j++)
+				min_time = Math.min(min_time, getTimeToPass(b, nearbyObjects.get(j), speed + maxVelocity));
+		}
+		return min_time;
+	}
+	
+	/**Returns the time for two objects to close the gap between them plus passFraction of the sum of their diameters.
+	 */
+	private static float getTimeToPass(Circle a, Circle b, float closing_speed) {
+		float gap = Math.max(a.getDistance(b) - a.getRadius() - b.getRadius(), 0.0f);
+		return (gap + passFraction * 2 * (a.getRadius() + b.getRadius())) / closing_speed;
+	}
+	
+	/**Returns how long the bucketbot can be left to move on its own before it could possibly collide
+	 * with anything, assuming everything else nearby could be heading straight toward it at the
+	 * maximum velocity of the map.  Used for local time stepping, where each bucketbot is only
+	 * updated as often as its own surroundings require.  Other bucketbots that haven't been updated
+	 * since before cur_time are moved over all of that time when they are, so they are taken to
+	 * already be as much closer as they could have come since their positions were current.
+	 * @param r bucketbot to check
+	 * @param speed fastest speed r will move over the time interval
+	 * @param cur_time current time, which r has been updated to
+	 * @param max_time longest amount of time to look ahead
+	 * @param max_lag longest any other bucketbot may have gone without being updated
+	 * @return time until r could first collide with another object or a wall, no more than max_time
+	 */
+	public double getTimeWithoutCollision(Bucketbot r, float speed, double cur_time, double max_time, double max_lag) {
+		float closing_speed = speed + maxVelocity;
+		double min_time = max_time;
+		Bucket b = r.getBucket();
+		
+		//walls don't move, so only the bucketbot's own speed counts
+		if(speed > 0.0f) {
+			float wall_distance = Math.min(Math.min(r.getX(), getWidth() - r.getX()),
+											Math.min(r.getY(), getHeight() - r.getY())) - r.getRadius();
+			min_time = Math.min(min_time, wall_distance / speed);
+		}
 		
-		float max_vel = 0.001f;	//start non-zero
-		for(Bucketbot b : bucketbots)
-			max_vel = Math.max(max_vel, b.getMaxVelocity());
-		//return min_dist / max_vel;
+		//only need to look as far as anything could travel in max_time, plus how far behind it could be
+		float search_distance = (float)(closing_speed * max_time);
+		float bucketbot_search_distance = (float)(search_distance + maxVelocity * max_lag);
+		//a carried bucket is where its bucketbot is (and buckets are all the same size, as are bucketbots)
+		if(b != null)
+			bucketbot_search_distance += Math.max(2 * (b.getRadius() - r.getRadius()), 0.0f);
+		for(Circle c : getBucketbotsWithinDistance(r.getX(), r.getY(), r.getRadius() + bucketbot_search_distance)) {
+			if(c == r) continue;
+			Bucketbot o = (Bucketbot)c;
+			float lag = (float)(maxVelocity * Math.max(cur_time - o.getPositionTime(), 0.0));
+			float gap = c.getDistance(r.getX(), r.getY()) - c.getRadius() - r.getRadius() - lag;
+			min_time = Math.min(min_time, gap / closing_speed);
+			
+			//its bucket is just as far behind
+			if(b != null && o.getBucket() != null) {
+				gap = c.getDistance(b.getX(), b.getY()) - o.getBucket().getRadius() - b.getRadius() - lag;
+				min_time = Math.min(min_time, gap / closing_speed);
+			}
+		}
 		
-		//temporary method - simply find the min time a bucketbot can cover its diameter
-		//under the diameters, such that bucketbots don't "tunnel" through each other
-		float diam = 1.8f * ((BucketbotBase)bucketbots.get(0)).getRadius();
-		return diam / max_vel;
+		//buckets that aren't being carried stay where they are, and the rest were checked along with their bucketbots
+		if(b != null) {
+			for(Circle c : getBucketsWithinDistance(b.getX(), b.getY(), b.getRadius() + search_distance)) {
+				if(c == b) continue;
+				float gap = c.getDistance(b.getX(), b.getY()) - c.getRadius() - b.getRadius();
+				min_time = Math.min(min_time, gap / closing_speed);
+			}
+		}
+		
+		return Math.max(min_time, 0.0);
 	}
 
 	
@@ -213,8 +483,8 @@ public class Map implements Updateable {
 	 * @see alphabetsoup.framework.Updateable#update(double, double)
 	 */
 	public void update(double last_time, double cur_time) {
-		bucketQuadtree.updateTree();
-		bucketbotQuadtree.updateTree();
+		bucketIndex.updateTree();
+		bucketbotIndex.updateTree();
 	}
 
 	/**
@@ -279,4 +549,20 @@ public class Map implements Updateable {
 	public float getMaxVelocity() {
 		return maxVelocity;
 	}
+
+	/**
+	 * @return true if moves are checked for collisions along their whole path
+	 */
+	public boolean isUsingSweptCollisions() {
+		return sweptCollisions;
+	}
+
+	/**Sets whether moves are checked for collisions along their whole path, rather than only where they end,
+	 * by having bucketbots move with moveBucketbotUntilContact rather than moveBucketbot.
+	 * Without it, steps must be short enough that nothing can pass through anything else within one.
+	 * @param swept_collisions true to check the whole path
+	 */
+	public void setSweptCollisions(boolean swept_collisions) {
+		sweptCollisions = swept_collisions;
+	}
 }
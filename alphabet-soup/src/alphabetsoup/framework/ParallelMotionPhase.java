@@ -0,0 +1,238 @@
+/**
+ *
+ */
+package alphabetsoup.framework;
+
+import java.io.Serializable;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**ParallelMotionPhase moves all of the Bucketbots on the Map for one time step using multiple threads.
+ * The map is divided into square tiles which are at least as large as the distance over which two
+ * Bucketbots could interact within the step, and the tiles are colored like a 2x2 checkerboard so that
+ * no two tiles of the same color touch.  Each color is done in turn, with all of the tiles of that color
+ * moved concurrently and the Bucketbots within each tile moved in order.<br>
+ * While the tiles are being moved, Map.moveBucketbot checks for collisions against the Bucketbots and
+ * Buckets in the surrounding tiles rather than the spatial indices, and the spatial indices are brought up to date
+ * afterward.  The result only depends on the tiling, never on the number of threads or how they are run.
+ */
+public class ParallelMotionPhase implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	private Map map;
+	private int numThreads;
+	private transient ForkJoinPool pool;	//created when first needed (threads can't be kept in a snapshot)
+	private float minTileSize;
+
+	//tiling for the current step
+	private float tileSize;
+	private int numTilesX, numTilesY;
+	private List<List<Circle>> tileBucketbots = new ArrayList<List<Circle>>();
+	private List<List<Circle>> tileBuckets = new ArrayList<List<Circle>>();
+	private List<List<PhasedUpdateable>> tileMovers = new ArrayList<List<PhasedUpdateable>>();
+
+	//positions at the start of the step, so the spatial indices can be updated afterward
+	private float oldX[] = new float[0], oldY[] = new float[0];
+	private Circle oldBucket[] = new Circle[0];
+
+	/**Constructs a ParallelMotionPhase for the specified map.
+	 * @param m Map the Bucketbots are on
+	 * @param num_threads number of threads to move Bucketbots with
+	 * @param min_tile_size smallest width of a tile; tiles are made larger if needed by a step
+	 */
+	public ParallelMotionPhase(Map m, int num_threads, float min_tile_size) {
+		map = m;
+		numThreads = num_threads;
+		minTileSize = min_tile_size;
+	}
+
+	/**Moves each of the Bucketbots which are PhasedUpdateable by calling updateMotion.
+	 * Bucketbots which aren't PhasedUpdateable are left for the caller to update.
+	 * @param bucketbots all of the Bucketbots on the map, in the order they should be moved within each tile
+	 * @param last_time absolute time all objects were last updated
+	 * @param cur_time current system time to update to
+	 */
+	public void moveBucketbots(Bucketbot bucketbots[], final double last_time, final double cur_time) {
+		//tiles need to be large enough that nothing two tiles away could be reached within the step
+		float max_radius = 0.0f;
+		for(Bucketbot r : bucketbots) max_radius = Math.max(max_radius, r.getRadius());
+		for(Bucket b : map.getBuckets()) max_radius = Math.max(max_radius, b.getRadius());
+		float max_travel = (float)(map.getMaxVelocity() * (cur_time - last_time));
+		tileSize = Math.max(minTileSize, 2*max_radius + 2*max_travel);
+		numTilesX = Math.max(1, (int)Math.ceil(map.getWidth() / tileSize));
+		numTilesY = Math.max(1, (int)Math.ceil(map.getHeight() / tileSize));
+		int num_tiles = numTilesX * numTilesY;
+
+		//reuse the tile lists from previous steps
+		while(tileBucketbots.size() < num_tiles) {
+			tileBucketbots.add(new ArrayList<Circle>());
+			tileBuckets.add(new ArrayList<Circle>());
+			tileMovers.add(new ArrayList<PhasedUpdateable>());
+		}
+		for(int i = 0; i < num_tiles; i++) {
+			tileBucketbots.get(i).clear();
+			tileBuckets.get(i).clear();
+			tileMovers.get(i).clear();
+		}
+
+		//sort everything into tiles, and remember where everything started
+		if(oldX.length != bucketbots.length) {
+			oldX = new float[bucketbots.length];
+			oldY = new float[bucketbots.length];
+			oldBucket = new Circle[bucketbots.length];
+		}
+		for(int i = 0; i < bucketbots.length; i++) {
+			Circle c = (Circle)bucketbots[i];
+			oldX[i] = c.getX();
+			oldY[i] = c.getY();
+			oldBucket[i] = (Circle)bucketbots[i].getBucket();
+			int tile = getTile(c.getX(), c.getY());
+			tileBucketbots.get(tile).add(c);
+			if(bucketbots[i] instanceof PhasedUpdateable)
+				tileMovers.get(tile).add((PhasedUpdateable)bucketbots[i]);
+		}
+		for(Bucket b : map.getBuckets())
+			tileBuckets.get(getTile(b.getX(), b.getY())).add((Circle)b);
+
+		//move each color of tiles in turn
+		if(pool == null) pool = new ForkJoinPool(numThreads);
+		map.parallelMotionPhase = this;
+		try {
+			for(int color = 0; color < 4; color++) {
+				List<List<PhasedUpdateable>> color_tiles = new ArrayList<List<PhasedUpdateable>>();
+				for(int ty = color / 2; ty < numTilesY; ty += 2)
+					for(int tx = color % 2; tx < numTilesX; tx += 2)
+						if(tileMovers.get(ty * numTilesX + tx).size() > 0)
+							color_tiles.add(tileMovers.get(ty * numTilesX + tx));
+
+				//not worth handing off to other threads if there's nothing to do in parallel
+				if(color_tiles.size() <= 1 || pool.getParallelism() == 1) {
+					for(List<PhasedUpdateable> movers : color_tiles)
+						for(PhasedUpdateable u : movers)
+							u.updateMotion(last_time, cur_time);
+					continue;
+				}
+
+				List<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+				for(final List<PhasedUpdateable> movers : color_tiles) {
+					tasks.add(new Callable<Object>() {
+						public Object call() {
+							for(PhasedUpdateable u : movers)
+								u.updateMotion(last_time, cur_time);
+							return null;
+						}
+					});
+				}
+				for(Future<Object> f : pool.invokeAll(tasks)) {
+					try {
+						f.get();
+					} catch(ExecutionException e) {
+						throw new RuntimeException(e.getCause());
+					} catch(InterruptedException e) {
+						throw new RuntimeException(e);
+					}
+				}
+			}
+		}
+		finally {
+			map.parallelMotionPhase = null;
+		}
+
+		//put everything that moved into its new place in the spatial indices
+		for(int i = 0; i < bucketbots.length; i++) {
+			Circle c = (Circle)bucketbots[i];
+			if(c.getX() == oldX[i] && c.getY() == oldY[i])
+				continue;
+			float x_new = c.getX(), y_new = c.getY();
+			c.setX(oldX[i]);	c.setY(oldY[i]);
+			map.bucketbotIndex.moveTo(c, x_new, y_new);
+			if(oldBucket[i] != null) {
+				oldBucket[i].setX(oldX[i]);	oldBucket[i].setY(oldY[i]);
+				map.bucketIndex.moveTo(oldBucket[i], x_new, y_new);
+			}
+		}
+	}
+
+	/**Called by Map.moveBucketbot while the Bucketbots are being moved.  Does the same as Map.moveBucketbot,
+	 * except that it only checks the surrounding tiles, and doesn't update the spatial indices.
+	 * The map boundaries must already have been checked.
+	 * @param r bucketbot to move
+	 * @param x_new new x position
+	 * @param y_new new y position
+	 * @return true if the move is valid and was made
+	 */
+	boolean moveBucketbot(Bucketbot r, float x_new, float y_new) {
+		Circle c = (Circle)r;
+		Circle b = (Circle)r.getBucket();
+		int tile_x = getTileX(c.getX()), tile_y = getTileY(c.getY());
+
+		for(int ty = Math.max(tile_y - 1, 0); ty <= Math.min(tile_y + 1, numTilesY - 1); ty++)
+			for(int tx = Math.max(tile_x - 1, 0); tx <= Math.min(tile_x + 1, numTilesX - 1); tx++) {
+				for(Circle o : tileBucketbots.get(ty * numTilesX + tx))
+					if(o != c && o.IsCollision(x_new, y_new, c.getRadius()))
+						return false;
+				if(b == null) continue;
+				for(Circle o : tileBuckets.get(ty * numTilesX + tx))
+					if(o != b && o.IsCollision(x_new, y_new, b.getRadius()))
+						return false;
+			}
+
+		placeBucketbot(r, x_new, y_new);
+		return true;
+	}
+
+	/**Called by Map.getBucketbotFirstContact while the Bucketbots are being moved.  Does the same as
+	 * Map.getBucketbotFirstContact, except that it only checks the surrounding tiles.
+	 * @param r bucketbot to move
+	 * @param x_new new x position
+	 * @param y_new new y position
+	 * @param last_time time the move starts at
+	 * @param cur_time time the move ends at
+	 * @return fraction of the move (0 to 1) at the first contact, or Float.POSITIVE_INFINITY if there is none
+	 */
+	float getFirstContact(Bucketbot r, float x_new, float y_new, double last_time, double cur_time) {
+		Circle c = (Circle)r;
+		Circle b = (Circle)r.getBucket();
+		int tile_x = getTileX(c.getX()), tile_y = getTileY(c.getY());
+		float first = Float.POSITIVE_INFINITY;
+
+		for(int ty = Math.max(tile_y - 1, 0); ty <= Math.min(tile_y + 1, numTilesY - 1); ty++)
+			for(int tx = Math.max(tile_x - 1, 0); tx <= Math.min(tile_x + 1, numTilesX - 1); tx++) {
+				for(Circle o : tileBucketbots.get(ty * numTilesX + tx))
+					if(o != c)
+						first = Math.min(first, o.getContactFraction(c.getRadius(), c.getX(), c.getY(), x_new, y_new, last_time, cur_time));
+				if(b == null) continue;
+				for(Circle o : tileBuckets.get(ty * numTilesX + tx))
+					if(o != b)
+						first = Math.min(first, o.getContactFraction(b.getRadius(), b.getX(), b.getY(), x_new, y_new, last_time, cur_time));
+			}
+		return first;
+	}
+
+	/**Called by Map while the Bucketbots are being moved to put a Bucketbot (and its Bucket) at its new position,
+	 * without updating the spatial indices.
+	 * @param r bucketbot to move
+	 * @param x_new new x position
+	 * @param y_new new y position
+	 */
+	void placeBucketbot(Bucketbot r, float x_new, float y_new) {
+		Circle c = (Circle)r;
+		Circle b = (Circle)r.getBucket();
+		c.setX(x_new);	c.setY(y_new);
+		if(b != null) {
+			b.setX(x_new);	b.setY(y_new);
+		}
+	}
+
+	private int getTileX(float x) {
+		return Math.min(Math.max((int)(x / tileSize), 0), numTilesX - 1);
+	}
+
+	private int getTileY(float y) {
+		return Math.min(Math.max((int)(y / tileSize), 0), numTilesY - 1);
+	}
+
+	private int getTile(float x, float y) {
+		return getTileY(y) * numTilesX + getTileX(x);
+	}
+}
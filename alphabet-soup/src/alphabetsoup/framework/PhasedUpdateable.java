@@ -0,0 +1,26 @@
+/**
+ *
+ */
+package alphabetsoup.framework;
+
+/**PhasedUpdateable is an Updateable whose update can be split into two phases: moving, which
+ * only changes the object itself and its position on the Map, and acting, which may interact with
+ * anything else in the simulation.  Calling update must be the same as calling updateMotion
+ * followed by updateActions.  This allows SimulationWorld to move all of the Bucketbots at once
+ * (in parallel) before letting each act in turn.
+ */
+public interface PhasedUpdateable extends Updateable {
+
+	/**Moves the object up to the current time.  This must not change anything other than the object
+	 * itself, the Bucket it is carrying, and their positions on the Map.
+	 * @param last_time absolute time all objects were last updated (used as a point of reference)
+	 * @param cur_time current system time to update to
+	 */
+	public void updateMotion(double last_time, double cur_time);
+
+	/**Performs any actions for the current time, after updateMotion has been called for the same time.
+	 * @param last_time absolute time all objects were last updated (used as a point of reference)
+	 * @param cur_time current system time to update to
+	 */
+	public void updateActions(double last_time, double cur_time);
+}
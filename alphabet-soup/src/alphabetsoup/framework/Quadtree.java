@@ -3,6 +3,7 @@
  */
 package alphabetsoup.framework;
 
+import java.io.Serializable;
 import java.util.*;
 
 import org.lwjgl.opengl.GL11;
@@ -11,7 +12,8 @@ import org.lwjgl.opengl.GL11;
  * used for fast lookup of local interactions between objects.
  * @author Chris Hazard
  */
-public class Quadtree {
+public class Quadtree implements SpatialIndex, Serializable {
+	private static final long serialVersionUID = 1L;
 
 	/**Head node of the Quadtree
 	 */
@@ -43,6 +45,18 @@ public class Quadtree {
 		topnode.reoptimizeNode();
 	}
 	
+	/**Adds a batch of circle objects to the Quadtree, only reoptimizing it once they are all in.
+	 * Nodes are split in the same way as they would be if the objects were added one at a time,
+	 * so the tree is the same either way, but this takes time proportional to n log n rather than
+	 * walking the tree to rebalance it after each object.
+	 * @param circles circle objects to add
+	 */
+	public void addCircleObjects(List<? extends Circle> circles) {
+		for(Circle c : circles)
+			topnode.addCircleObject(c);
+		topnode.reoptimizeNode();
+	}
+	
 	/**Removes a circle object from the robotQuadtree
 	 * @param c circle object to remove
 	 */
@@ -51,13 +65,6 @@ public class Quadtree {
 		topnode.reoptimizeNode();
 	}
 	
-	/**Returns the shortest distance until bucketbots could potentially collide
-	 * @return shortest distance before potential collision
-	 */
-	public float getShortestDistanceWithoutCollision() {
-		return topnode.getShortestDistanceWithoutCollision();
-	}
-	
 	/**Returns true if Circle c moving to location x_new, y_new will not collide with another Circle,
 	 * false if it will collide.
 	 * @param c Circle to check against for collisions.
@@ -69,12 +76,25 @@ public class Quadtree {
 		return topnode.isValidMove(c, x_new, y_new);
 	}
 	
-	/**Moves Circle c from its current location to the position specified by x_new, y_new 
+	/* (non-Javadoc)
+	 * @see alphabetsoup.framework.SpatialIndex#getFirstContact(alphabetsoup.framework.Circle, float, float, float, double, double)
+	 */
+	public float getFirstContact(Circle c, float x_new, float y_new, float max_travel, double start_time, double end_time) {
+		return topnode.getFirstContact(c, c.getX(), c.getY(), x_new, y_new, max_travel, start_time, end_time);
+	}
+	
+	/**Moves Circle c from its current location to the position specified by x_new, y_new.
+	 * If the new position is in the same leaf, the position is changed in place,
+	 * otherwise c is taken out of the tree and added back in.
 	 * @param c Circle to move
 	 * @param x_new new x position 
 	 * @param y_new new y position
 	 */
 	public void moveTo(Circle c, float x_new, float y_new) {
+		if(c.quadtreeLeaf != null && c.quadtreeLeaf.moveWithinLeaf(c, x_new, y_new)) {
+			c.setX(x_new);	c.setY(y_new);
+			return;
+		}
 		topnode.removeCircleObject(c);
 		c.setX(x_new);	c.setY(y_new);
 		topnode.addCircleObject(c);
@@ -92,9 +112,20 @@ public class Quadtree {
 	 */
 	public List<Circle> getObjectsWithinCircle(Circle c) {
 		List<Circle> in_view = new ArrayList<Circle>();
-		topnode.getObjectsWithinDistance(in_view, c);
+		topnode.getObjectsWithinDistance(in_view, c.getX(), c.getY(), c.getRadius(), c);
 		return in_view;
 	}
+	
+	/**Adds the objects within a distance of a point to a list, without allocating anything else.
+	 * @param x x coordinate of the center
+	 * @param y y coordinate of the center
+	 * @param distance distance from (x,y)
+	 * @param excluded object to leave out, or null
+	 * @param in_view list to add the objects to
+	 */
+	public void getObjectsWithinDistance(float x, float y, float distance, Circle excluded, List<Circle> in_view) {
+		topnode.getObjectsWithinDistance(in_view, x, y, distance, excluded);
+	}
 
 	/**Recursively renders the quadtree.
 	 * Note that glBegin and glEnd must be called before and after this function, as it only
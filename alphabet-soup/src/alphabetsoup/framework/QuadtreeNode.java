@@ -1,26 +1,42 @@
 
 package alphabetsoup.framework;
 
+import java.io.Serializable;
 import java.util.*;
 
 import org.lwjgl.opengl.GL11;
 
 /**QuadtreeNode is the class that makes up the nodes of the Quadtree and performs recursive functions.
+ * The objects of a leaf are kept in parallel arrays of their positions and radii, so that scanning a leaf
+ * reads consecutive floats rather than following a reference to each Circle, and doesn't allocate an iterator.
+ * Each Circle knows its leaf and its index in the arrays of the leaf, so removing it swaps the last object into
+ * its place, and moving it within the leaf just changes its position in the arrays.
+ * The arrays are only valid because a Circle in a Quadtree is only ever moved with Quadtree.moveTo.
  * @author Chris Hazard
  */
-public class QuadtreeNode {
+public class QuadtreeNode implements Serializable {
+	private static final long serialVersionUID = 1L;
 
 	//using the shape below, with the 4 values representing the order of child nodes
 	// y1 \ x1...x2
 	// ...  0  1
 	// y2   2  3
 	private float x1, y1, x2, y2;
+	//the positions that are routed to this node from the top of the tree, min inclusive and max exclusive.
+	//these are the midpoints of the ancestors as compared when adding, which aren't always exactly x1, x2, etc.
+	private float minX = Float.NEGATIVE_INFINITY, maxX = Float.POSITIVE_INFINITY;
+	private float minY = Float.NEGATIVE_INFINITY, maxY = Float.POSITIVE_INFINITY;
 	QuadtreeNode children[];
-	HashSet<Circle> objects;
-	private Circle largestCircle = null;	//largest circle within the node
 	
-	//used by getShortestDistanceWithoutCollision() to iterate over the the contents of the HashSet objects 
-	static Circle staticDistanceArray[] = new Circle[Quadtree.divisionThreshold+1];
+	//objects of a leaf node, in parallel arrays; objects[i] is at (objectX[i], objectY[i]) with radius objectRadius[i].
+	//null until a leaf has objects, and after the node is split
+	Circle objects[] = null;
+	private float objectX[] = null, objectY[] = null, objectRadius[] = null;
+	int numObjects = 0;
+	private float largestRadius = 0.0f;	//radius of the largest circle within the node
+	//objects have been added or removed within the node since it was last reoptimized.  moving an object
+	// within a leaf doesn't count, since reoptimizing only depends on how many objects each node has
+	private boolean changed = false;
 	
 	/**Constructs a QuadtreeNode
 	 * @param parent_node Parent QuadtreeNode, null if head node.
@@ -32,9 +48,71 @@ public class QuadtreeNode {
 	public QuadtreeNode(QuadtreeNode parent_node, float x1_pos, float y1_pos, float x2_pos, float y2_pos) {
 		x1 = x1_pos;	y1 = y1_pos;	x2 = x2_pos;	y2 = y2_pos;
 		children = new QuadtreeNode[4];
-		//adjust these initial capacity values if plan on having a larger flux of objects 
-		objects = new HashSet<Circle>(Quadtree.divisionThreshold + 4,
-				(float)(Quadtree.divisionThreshold+3) / (Quadtree.divisionThreshold+4));
+	}
+	
+	/**Adds a Circle to the arrays of a leaf node, growing them if needed.
+	 * @param c Circle to add
+	 */
+	private void addLeafObject(Circle c) {
+		if(objects == null) {
+			//adjust this initial capacity if plan on having a larger flux of objects 
+			int capacity = Quadtree.divisionThreshold + 4;
+			objects = new Circle[capacity];
+			objectX = new float[capacity];	objectY = new float[capacity];	objectRadius = new float[capacity];
+		}
+		else if(numObjects == objects.length) {
+			int capacity = 2 * numObjects;
+			objects = Arrays.copyOf(objects, capacity);
+			objectX = Arrays.copyOf(objectX, capacity);
+			objectY = Arrays.copyOf(objectY, capacity);
+			objectRadius = Arrays.copyOf(objectRadius, capacity);
+		}
+		objects[numObjects] = c;
+		objectX[numObjects] = c.getX();	objectY[numObjects] = c.getY();	objectRadius[numObjects] = c.getRadius();
+		c.spatialIndexSlot = numObjects;
+		c.quadtreeLeaf = this;
+		numObjects++;
+	}
+	
+	/**Removes a Circle from the arrays of a leaf node by moving the last object into its place.
+	 * @param c Circle to remove
+	 * @return true if c was in the leaf
+	 */
+	private boolean removeLeafObject(Circle c) {
+		int i = c.spatialIndexSlot;
+		if(i < 0 || i >= numObjects || objects[i] != c)
+			return false;
+		numObjects--;
+		objects[i] = objects[numObjects];	objectX[i] = objectX[numObjects];
+		objectY[i] = objectY[numObjects];	objectRadius[i] = objectRadius[numObjects];
+		objects[i].spatialIndexSlot = i;
+		objects[numObjects] = null;
+		c.spatialIndexSlot = -1;
+		c.quadtreeLeaf = null;
+		return true;
+	}
+	
+	/**Moves a Circle to a new position without taking it out of this node, if this is a leaf holding it
+	 * and the new position is one that would be added to this node.  The Circle's own position is not changed.
+	 * @param c Circle to move
+	 * @param x_new new x position
+	 * @param y_new new y position
+	 * @return true if the Circle was moved, false if it needs to be removed and added again
+	 */
+	boolean moveWithinLeaf(Circle c, float x_new, float y_new) {
+		if(children[0] != null || x_new < minX || x_new >= maxX || y_new < minY || y_new >= maxY)
+			return false;
+		int i = c.spatialIndexSlot;
+		if(i < 0 || i >= numObjects || objects[i] != c)
+			return false;
+		objectX[i] = x_new;	objectY[i] = y_new;
+		return true;
+	}
+	
+	/**Sets the positions that are routed to this node, from the bounds of its parent.
+	 */
+	private void setRoutingBounds(float min_x, float max_x, float min_y, float max_y) {
+		minX = min_x;	maxX = max_x;	minY = min_y;	maxY = max_y;
 	}
 	
 	
@@ -48,12 +126,14 @@ public class QuadtreeNode {
 	public boolean isValidMove(Circle c, float x_new, float y_new) {
 		//if leaf node, check all the objects contained within
 		if(children[0] == null) {
-			for(Circle o : objects) {
+			float radius = c.getRadius();
+			for(int i = 0; i < numObjects; i++) {
 				//don't detect collision with self
-				if(c == o)
+				if(objects[i] == c)
 					continue;
 				//if it's a collision, then return false
-				if(o.IsCollision(x_new, y_new, c.getRadius()))
+				float dx = objectX[i] - x_new, dy = objectY[i] - y_new, r = objectRadius[i] + radius;
+				if(dx * dx + dy * dy <= r * r)
 					return false;
 			}
 			return true;
@@ -95,12 +175,13 @@ public class QuadtreeNode {
 	 * @param c Circle object to remove.
 	 */
 	public void addCircleObject(Circle c) {
+		changed = true;
 		//if it's bigger, then it's the largest circle
-		if(largestCircle == null || c.getRadius() > largestCircle.getRadius())
-			largestCircle = c;
+		if(c.getRadius() > largestRadius)
+			largestRadius = c.getRadius();
 
 		if(children[0] == null) {
-			objects.add(c);
+			addLeafObject(c);
 		}
 		else {
 			//see if in left half
@@ -126,21 +207,17 @@ public class QuadtreeNode {
 	 */
 	public void removeCircleObject(Circle c) 
 	{
+		changed = true;
 		//if leaf node, remove circle, otherwise traverse subnodes
 		if(children[0] == null) 
 		{
-			objects.remove(c);
-			
-			//get new largest circle
-			float largest_size = 0.0f;
-			largestCircle = null;
-			for(Circle i : objects)
-			{
-				if(i.getRadius() > largest_size) {
-					largestCircle = i;
-					largest_size = largestCircle.getRadius();
-				}
-			}
+			//only need a new largest circle if this might have been it
+			if(!removeLeafObject(c) || c.getRadius() < largestRadius)
+				return;
+			largestRadius = 0.0f;
+			for(int i = 0; i < numObjects; i++)
+				if(objectRadius[i] > largestRadius)
+					largestRadius = objectRadius[i];
 		}
 		else 
 		{
@@ -161,79 +238,129 @@ public class QuadtreeNode {
 			}
 			
 			//get new largest circle
-			float largest_size = 0.0f;
-			largestCircle = null;
+			if(c.getRadius() < largestRadius)
+				return;
+			largestRadius = 0.0f;
 			for(int i = 0; i < 4; i++)
-			{
-				if(children[i].largestCircle != null && children[i].largestCircle.getRadius() > largest_size) {
-					largestCircle = children[i].largestCircle;
-					largest_size = largestCircle.getRadius();
-				}
-			}
+				if(children[i].largestRadius > largestRadius)
+					largestRadius = children[i].largestRadius;
 		}
 	}
 	
 	/**Populates in_view with the list of objects within the specified circle.
 	 * @param in_view HashSet<Circle> containing objects within distance.
-	 * @param c Circle to find objects within
+	 * @param x x coordinate of the center of the circle
+	 * @param y y coordinate of the center of the circle
+	 * @param radius radius of the circle
+	 * @param excluded object to leave out of in_view, or null
 	 */
-	public void getObjectsWithinDistance(List<Circle> in_view, Circle c) {
+	public void getObjectsWithinDistance(List<Circle> in_view, float x, float y, float radius, Circle excluded) {
 		if(children[0] == null) {
-			for(Circle o : objects)
-				if(o.IsCollision(c))
-					in_view.add(o);
+			for(int i = 0; i < numObjects; i++) {
+				if(objects[i] == excluded)
+					continue;
+				float dx = objectX[i] - x, dy = objectY[i] - y, r = objectRadius[i] + radius;
+				if(dx * dx + dy * dy <= r * r)
+					in_view.add(objects[i]);
+			}
 			return;
 		}
 		
 		//find distance to search for another object (but make sure to include
 		// a padding to check for the nodes where an object may be overlapping
 		// two nodes (but don't pass this distance on to the collision detection itself)
-		float dist = c.getRadius();
-		if(largestCircle != null)
-			dist += largestCircle.getRadius();
+		float dist = radius + largestRadius;
 
 		//check to see if it's in any of the four quadrants
 		//see if in left half
-		if(c.getX() - dist <= x1 + (x2 - x1)/2) {
+		if(x - dist <= x1 + (x2 - x1)/2) {
 			//see if in top half
-			if(c.getY() - dist <= y1 + (y2 - y1)/2)
-				children[0].getObjectsWithinDistance(in_view, c);
+			if(y - dist <= y1 + (y2 - y1)/2)
+				children[0].getObjectsWithinDistance(in_view, x, y, radius, excluded);
 
 			//see if in bottom half
-			if(c.getY() + dist >= y1 + (y2 - y1)/2)
-				children[2].getObjectsWithinDistance(in_view, c);
+			if(y + dist >= y1 + (y2 - y1)/2)
+				children[2].getObjectsWithinDistance(in_view, x, y, radius, excluded);
 		}
 		
 		//see if in right half
-		if(c.getX() + dist >= x1 + (x2 - x1)/2) {
+		if(x + dist >= x1 + (x2 - x1)/2) {
 			//see if in top half
-			if(c.getY() - dist <= y1 + (y2 - y1)/2)
-				children[1].getObjectsWithinDistance(in_view, c);
+			if(y - dist <= y1 + (y2 - y1)/2)
+				children[1].getObjectsWithinDistance(in_view, x, y, radius, excluded);
 
 			//see if in bottom half
-			if(c.getY() + dist >= y1 + (y2 - y1)/2)
-				children[3].getObjectsWithinDistance(in_view, c);
+			if(y + dist >= y1 + (y2 - y1)/2)
+				children[3].getObjectsWithinDistance(in_view, x, y, radius, excluded);
 		}
 	}
 	
+	/**Finds the first contact of Circle c moving from (x_from,y_from) to (x_to,y_to) with any other circle.
+	 * @param c Circle to move
+	 * @param x_from x position it starts at
+	 * @param y_from y position it starts at
+	 * @param x_to x position it ends at
+	 * @param y_to y position it ends at
+	 * @param max_travel farthest any other circle could have moved over the time
+	 * @param start_time time the move starts at
+	 * @param end_time time the move ends at
+	 * @return fraction of the move at the first contact, or Float.POSITIVE_INFINITY if there is none
+	 */
+	public float getFirstContact(Circle c, float x_from, float y_from, float x_to, float y_to,
+			float max_travel, double start_time, double end_time) {
+		float radius = c.getRadius();
+		float first = Float.POSITIVE_INFINITY;
+		if(children[0] == null) {
+			for(int i = 0; i < numObjects; i++) {
+				//don't detect collision with self
+				if(objects[i] == c)
+					continue;
+				first = Math.min(first, objects[i].getContactFraction(radius, x_from, y_from, x_to, y_to, start_time, end_time));
+			}
+			return first;
+		}
+		
+		//search the quadrants the box around the move overlaps, padded for objects overlapping two nodes
+		// and for how far they could have come from
+		float dist = radius + largestRadius + max_travel;
+		float x_mid = x1 + (x2 - x1)/2, y_mid = y1 + (y2 - y1)/2;
+		boolean left = Math.min(x_from, x_to) - dist <= x_mid, right = Math.max(x_from, x_to) + dist >= x_mid;
+		boolean top = Math.min(y_from, y_to) - dist <= y_mid, bottom = Math.max(y_from, y_to) + dist >= y_mid;
+		if(left && top)		first = Math.min(first, children[0].getFirstContact(c, x_from, y_from, x_to, y_to, max_travel, start_time, end_time));
+		if(right && top)	first = Math.min(first, children[1].getFirstContact(c, x_from, y_from, x_to, y_to, max_travel, start_time, end_time));
+		if(left && bottom)	first = Math.min(first, children[2].getFirstContact(c, x_from, y_from, x_to, y_to, max_travel, start_time, end_time));
+		if(right && bottom)	first = Math.min(first, children[3].getFirstContact(c, x_from, y_from, x_to, y_to, max_travel, start_time, end_time));
+		return first;
+	}
+	
 	/**reoptimizeNode recursively optimizes each node, adjusting the number of children and rearanging
 	 * the objects in each node.
+	 * Nodes which have had no objects added or removed since they were last reoptimized are skipped, since
+	 * reoptimizing leaves no node to split or combine, and so doing it again would not change anything.
 	 */
 	public void reoptimizeNode() {
+		if(!changed) return;
+		
 		//growing the tree
-		if(objects.size() >= Quadtree.divisionThreshold) {
+		if(numObjects >= Quadtree.divisionThreshold) {
 
 			//create child trees
 			children[0] = new QuadtreeNode(this, x1, y1, (x1+x2)/2, (y2+y1)/2);
 			children[1] = new QuadtreeNode(this, (x1+x2)/2, y1, x2, (y2+y1)/2);
 			children[2] = new QuadtreeNode(this, x1, (y2+y1)/2, (x1+x2)/2, y2);
 			children[3] = new QuadtreeNode(this, (x1+x2)/2, (y2+y1)/2, x2, y2);
+			float x_mid = x1 + (x2 - x1)/2, y_mid = y1 + (y2 - y1)/2;
+			children[0].setRoutingBounds(minX, x_mid, minY, y_mid);
+			children[1].setRoutingBounds(x_mid, maxX, minY, y_mid);
+			children[2].setRoutingBounds(minX, x_mid, y_mid, maxY);
+			children[3].setRoutingBounds(x_mid, maxX, y_mid, maxY);
 
 			//move all objects into the corresponding one
-			for(Circle c : objects)
-				addCircleObject(c);
+			for(int i = 0; i < numObjects; i++)
+				addCircleObject(objects[i]);
 
-			objects.clear();
+			objects = null;	objectX = null;	objectY = null;	objectRadius = null;
+			numObjects = 0;
 		}
 		
 		//update all children
@@ -247,78 +374,20 @@ public class QuadtreeNode {
 		if(children[0] != null
 					&& children[0].children[0] == null		&& children[1].children[0] == null
 					&& children[2].children[0] == null		&& children[3].children[0] == null
-					&& (children[0].objects.size() + children[1].objects.size()
-						+ children[2].objects.size() + children[3].objects.size()) < Quadtree.combineThreshold) {
+					&& (children[0].numObjects + children[1].numObjects
+						+ children[2].numObjects + children[3].numObjects) < Quadtree.combineThreshold) {
 				for(int i = 0; i < 4; i++) {
 					//need to clear children[0] first so that addCircleObject
 					// will know it has no children.  but, need to grab the objects first
 					// before setting children[i] to null.
-					HashSet<Circle> circles = children[i].objects; 
+					QuadtreeNode child = children[i]; 
 					children[i] = null;
 					//add all objects from child nodes
-					for(Circle c : circles)
-						addCircleObject(c);
+					for(int j = 0; j < child.numObjects; j++)
+						addCircleObject(child.objects[j]);
 				}
 		}
-	}
-	
-	/**Finds the shortest distance any circle can move before a collision could happen.
-	 * @return shortest distance to a collision
-	 */
-	//TODO make this find the shortest time based on bucketbot velocity
-	public float getShortestDistanceWithoutCollision() {
-		//if not a leaf node, then get values from child nodes, and find the minimum
-		if(children[0] != null) {
-			return Math.min(
-					Math.min(children[0].getShortestDistanceWithoutCollision(),
-							children[1].getShortestDistanceWithoutCollision()),
-					Math.min(children[2].getShortestDistanceWithoutCollision(),
-							children[3].getShortestDistanceWithoutCollision()) );
-		}
-
-		//leaf node, so find shortest distances for each robot
-		staticDistanceArray = objects.toArray(staticDistanceArray);
-		
-		float min_distance = Float.POSITIVE_INFINITY;
-		for(int i = 0; i < objects.size() - 1; i++) {
-			
-			Circle c1 = staticDistanceArray[i];
-			//only check moving objects
-			if(!c1.isMoving())
-				continue;
-			
-			float min_distance_squared = Float.POSITIVE_INFINITY;
-
-			//find distance to closest other circle object
-			for(int j = i+1; j < objects.size(); j++) {
-				Circle c2 = staticDistanceArray[j];
-				//only check moving objects
-				if(!c2.isMoving())
-					continue;
-
-				float dist = (c1.getX() - c2.getX()) * (c1.getX() - c2.getX())
-										+ (c1.getY() - c2.getY()) * (c1.getY() - c2.getY());
-				if(dist < min_distance_squared)
-					min_distance_squared = dist;
-			}
-			min_distance = Math.min(min_distance, (float)Math.sqrt(min_distance_squared) );
-
-			//check distance to sides of collision bucket
-			//use 2*diameter to account for another circle beyond the QuadtreeNode
-			float diameter = 2*c1.getRadius();
-			
-			//left side
-			min_distance = Math.min(min_distance, c1.getX() - (x1 - diameter) );
-			//right side
-			min_distance = Math.min(min_distance, (x2 + diameter) - c1.getX());
-			//top side
-			min_distance = Math.min(min_distance, (y1 + diameter) - c1.getY() );
-			//bottom side
-			min_distance = Math.min(min_distance, c1.getY() - (y2 - diameter));
-			
-		}
-		
-		return min_distance;
+		changed = false;
 	}
 	
 	/**Renders a rectangle over the are covered by the QuadtreeNode.
@@ -0,0 +1,20 @@
+/**
+ *
+ */
+package alphabetsoup.framework;
+
+/**Schedulable is an optional extension of Updateable for agents that know ahead of time when
+ * calling update would not do anything (such as while they are blocked performing a timed action).
+ * When SimulationWorld runs with its UpdateScheduler, Schedulable objects are only updated once they
+ * are due, rather than on every step.
+ */
+public interface Schedulable extends Updateable {
+
+	/**Gets the earliest time at which calling update could change the object
+	 * @param cur_time the current system time
+	 * @return the absolute time of the earliest update that may have an effect.  Any value less than
+	 * or equal to cur_time means the object needs to be updated every step.  Double.POSITIVE_INFINITY is
+	 * a valid return value if update never does anything unless the object is rescheduled.
+	 */
+	public double getNextUpdateTime(double cur_time);
+}
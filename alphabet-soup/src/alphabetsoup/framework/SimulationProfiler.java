@@ -0,0 +1,286 @@
+/**
+ *
+ */
+package alphabetsoup.framework;
+
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.management.ObjectName;
+
+/**SimulationProfiler measures where the wall clock time of SimulationWorld.update goes.  Each step is timed,
+ * as is each section within it: the update of each Updateable (grouped by class), the phases of the step such
+ * as finding the next event time, and any sections that the Updateables time themselves (such as planning).
+ * Sections may be nested, and the time of a section does not include the time of the sections within it,
+ * so the sections add up to the time of the steps.<br>
+ * The readings are available through JMX as a SimulationProfilerMXBean and are logged periodically.
+ * Profiling is off unless a SimulationProfiler has been given to the SimulationWorld with startProfiling,
+ * and costs nothing but a null check on each update when off.
+ * The sections and steps must all be timed from the thread updating the simulation.
+ */
+public class SimulationProfiler implements SimulationProfilerMXBean {
+
+	public static final String nextEventTimeSection = "next event time";
+	public static final String collisionCheckSection = "collision check";
+	public static final String parallelMotionSection = "parallel motion";
+	public static final String batchedMotionSection = "batched motion";
+
+	private static AtomicInteger numProfilers = new AtomicInteger(0);
+
+	/**Wall clock time and number of runs of a section.
+	 * Only changed by the thread updating the simulation, and volatile so that they can be read from other threads. */
+	private static class Timing {
+		volatile long nanoseconds = 0;
+		volatile long count = 0;
+	}
+
+	//replaced rather than changed when a section is added, so it can be read from other threads
+	private volatile LinkedHashMap<Object, Timing> sections = new LinkedHashMap<Object, Timing>();
+
+	private long sectionStart[] = new long[8];
+	private long sectionNestedStart[] = new long[8];
+	private int sectionDepth = 0;
+	private long nestedNanoseconds = 0;	//total time of the sections that have finished, for the sections around them
+
+	private long stepStart;
+	private volatile long stepCount = 0;
+	private volatile long wallNanoseconds = 0;
+	private volatile double simulatedTime = 0.0;
+	private volatile double simulationTime = 0.0;
+	private volatile boolean resetRequested = false;
+
+	private long logInterval;
+	private long nextLogTime;
+	private ObjectName objectName = null;
+
+	/**Builds a profiler.
+	 * @param log_interval wall clock seconds between logging the readings, 0 to never log them
+	 */
+	public SimulationProfiler(double log_interval)
+	{
+		logInterval = (long)(log_interval * 1e9);
+		nextLogTime = System.nanoTime() + logInterval;
+	}
+
+	/**Registers the profiler with the platform MBean server, so its readings can be seen with JMX.
+	 * Failing to register does not stop the profiler from working.
+	 */
+	public void register()
+	{
+		try {
+			objectName = new ObjectName("alphabetsoup:type=SimulationProfiler,id=" + numProfilers.getAndIncrement());
+			ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+		} catch(Throwable e) { System.out.println("could not register profiler with JMX. " + e); objectName = null; }
+	}
+
+	/**Removes the profiler from the platform MBean server, if it was registered.
+	 */
+	public void unregister()
+	{
+		if(objectName == null) return;
+		try {
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+		} catch(Throwable e) { System.out.println("could not unregister profiler from JMX. " + e); }
+		objectName = null;
+	}
+
+	/**Should be called at the start of each step of the simulation.
+	 */
+	public void startStep()
+	{
+		if(resetRequested) clear();
+		stepStart = System.nanoTime();
+	}
+
+	/**Should be called at the end of each step of the simulation.  Logs the readings if they are due.
+	 * @param step_size simulation time advanced by the step
+	 * @param cur_time simulation time at the end of the step
+	 */
+	public void endStep(double step_size, double cur_time)
+	{
+		long now = System.nanoTime();
+		wallNanoseconds += now - stepStart;
+		stepCount++;
+		simulatedTime += step_size;
+		simulationTime = cur_time;
+
+		if(logInterval > 0 && now >= nextLogTime) {
+			System.out.println(getSummary());
+			nextLogTime = now + logInterval;
+		}
+	}
+
+	/**Starts timing a section.  Every call must be matched by a call to endSection.
+	 */
+	public void startSection()
+	{
+		if(sectionDepth == sectionStart.length) {
+			sectionStart = Arrays.copyOf(sectionStart, 2 * sectionDepth);
+			sectionNestedStart = Arrays.copyOf(sectionNestedStart, 2 * sectionDepth);
+		}
+		sectionNestedStart[sectionDepth] = nestedNanoseconds;
+		sectionStart[sectionDepth++] = System.nanoTime();
+	}
+
+	/**Finishes timing the most recently started section.
+	 * @param section the class of the Updateable that was updated, or the name of the section
+	 */
+	public void endSection(Object section)
+	{
+		sectionDepth--;
+		long elapsed = System.nanoTime() - sectionStart[sectionDepth];
+		long nested = nestedNanoseconds - sectionNestedStart[sectionDepth];
+
+		Timing t = sections.get(section);
+		if(t == null) t = addSection(section);
+		t.nanoseconds += elapsed - nested;
+		t.count++;
+
+		nestedNanoseconds = sectionNestedStart[sectionDepth] + elapsed;
+	}
+
+	private synchronized Timing addSection(Object section)
+	{
+		LinkedHashMap<Object, Timing> new_sections = new LinkedHashMap<Object, Timing>(sections);
+		Timing t = new Timing();
+		new_sections.put(section, t);
+		sections = new_sections;
+		return t;
+	}
+
+	private void clear()
+	{
+		resetRequested = false;
+		sections = new LinkedHashMap<Object, Timing>();
+		stepCount = 0;
+		wallNanoseconds = 0;
+		simulatedTime = 0.0;
+	}
+
+	/**Gets the names to report the sections under, in the order of the sections.  Classes are named by
+	 * their simple names unless another section has the same simple name, in which case the full name is used.
+	 */
+	private static List<String> getSectionNames(LinkedHashMap<Object, Timing> s)
+	{
+		HashMap<String, Integer> uses = new HashMap<String, Integer>();
+		for(Object section : s.keySet()) {
+			String name = getSimpleSectionName(section);
+			Integer n = uses.get(name);
+			uses.put(name, (n == null) ? 1 : n + 1);
+		}
+		List<String> names = new ArrayList<String>(s.size());
+		for(Object section : s.keySet()) {
+			String name = getSimpleSectionName(section);
+			if(uses.get(name) > 1 && section instanceof Class) name = ((Class)section).getName();
+			names.add(name);
+		}
+		return names;
+	}
+
+	private static String getSimpleSectionName(Object section)
+	{
+		if(section instanceof Class) return ((Class)section).getSimpleName();
+		return section.toString();
+	}
+
+	/* (non-Javadoc)
+	 * @see alphabetsoup.framework.SimulationProfilerMXBean#getSimulationTime()
+	 */
+	public double getSimulationTime()
+	{
+		return simulationTime;
+	}
+
+	/* (non-Javadoc)
+	 * @see alphabetsoup.framework.SimulationProfilerMXBean#getStepCount()
+	 */
+	public long getStepCount()
+	{
+		return stepCount;
+	}
+
+	/* (non-Javadoc)
+	 * @see alphabetsoup.framework.SimulationProfilerMXBean#getAverageStepSize()
+	 */
+	public double getAverageStepSize()
+	{
+		if(stepCount == 0) return 0.0;
+		return simulatedTime / stepCount;
+	}
+
+	/* (non-Javadoc)
+	 * @see alphabetsoup.framework.SimulationProfilerMXBean#getSimulatedSecondsPerWallSecond()
+	 */
+	public double getSimulatedSecondsPerWallSecond()
+	{
+		if(wallNanoseconds == 0) return 0.0;
+		return simulatedTime / (wallNanoseconds / 1e9);
+	}
+
+	/* (non-Javadoc)
+	 * @see alphabetsoup.framework.SimulationProfilerMXBean#getWallSeconds()
+	 */
+	public double getWallSeconds()
+	{
+		return wallNanoseconds / 1e9;
+	}
+
+	/* (non-Javadoc)
+	 * @see alphabetsoup.framework.SimulationProfilerMXBean#getSectionSeconds()
+	 */
+	public java.util.Map<String, Double> getSectionSeconds()
+	{
+		LinkedHashMap<Object, Timing> s = sections;
+		java.util.Map<String, Double> seconds = new LinkedHashMap<String, Double>();
+		Iterator<String> names = getSectionNames(s).iterator();
+		for(Timing t : s.values())
+			seconds.put(names.next(), t.nanoseconds / 1e9);
+		return seconds;
+	}
+
+	/* (non-Javadoc)
+	 * @see alphabetsoup.framework.SimulationProfilerMXBean#getSectionCounts()
+	 */
+	public java.util.Map<String, Long> getSectionCounts()
+	{
+		LinkedHashMap<Object, Timing> s = sections;
+		java.util.Map<String, Long> counts = new LinkedHashMap<String, Long>();
+		Iterator<String> names = getSectionNames(s).iterator();
+		for(Timing t : s.values())
+			counts.put(names.next(), t.count);
+		return counts;
+	}
+
+	/* (non-Javadoc)
+	 * @see alphabetsoup.framework.SimulationProfilerMXBean#getSummary()
+	 */
+	public String getSummary()
+	{
+		final java.util.Map<String, Double> seconds = getSectionSeconds();
+		List<String> names = new ArrayList<String>(seconds.keySet());
+		//most time first
+		Collections.sort(names, new Comparator<String>() {
+			public int compare(String a, String b) {
+				return Double.compare(seconds.get(b), seconds.get(a));
+			}
+		});
+
+		double wall_seconds = getWallSeconds();
+		StringBuilder summary = new StringBuilder();
+		summary.append(String.format("profile at %.1f: %d steps of %.4f on average, %.1f simulated s/wall s",
+				getSimulationTime(), getStepCount(), getAverageStepSize(), getSimulatedSecondsPerWallSecond()));
+		for(String name : names)
+			summary.append(String.format(", %s %.1f%%", name, (wall_seconds > 0) ? 100 * seconds.get(name) / wall_seconds : 0.0));
+		return summary.toString();
+	}
+
+	/* (non-Javadoc)
+	 * @see alphabetsoup.framework.SimulationProfilerMXBean#reset()
+	 */
+	public void reset()
+	{
+		//cleared by the thread updating the simulation, which may be in the middle of a step
+		resetRequested = true;
+	}
+}
@@ -0,0 +1,55 @@
+/**
+ *
+ */
+package alphabetsoup.framework;
+
+/**SimulationProfilerMXBean is the management interface of SimulationProfiler, through which the readings
+ * of a running simulation can be watched with JMX (for example, with jconsole).
+ * All times are wall clock times except for the simulation time and the step size.
+ */
+public interface SimulationProfilerMXBean {
+
+	/**
+	 * @return simulation time at the end of the last step
+	 */
+	public double getSimulationTime();
+
+	/**
+	 * @return number of steps taken since the readings were reset
+	 */
+	public long getStepCount();
+
+	/**
+	 * @return average simulation time per step
+	 */
+	public double getAverageStepSize();
+
+	/**
+	 * @return simulation seconds advanced per wall clock second spent updating
+	 */
+	public double getSimulatedSecondsPerWallSecond();
+
+	/**
+	 * @return wall clock seconds spent updating
+	 */
+	public double getWallSeconds();
+
+	/**
+	 * @return wall clock seconds spent in each section (the class of each Updateable, or a phase of the step),
+	 * not counting the time of any sections within it
+	 */
+	public java.util.Map<String, Double> getSectionSeconds();
+
+	/**
+	 * @return number of times each section has been run
+	 */
+	public java.util.Map<String, Long> getSectionCounts();
+
+	/**
+	 * @return the readings as a single line of text, as logged periodically
+	 */
+	public String getSummary();
+
+	/**Clears the readings at the start of the next step. */
+	public void reset();
+}
@@ -3,9 +3,10 @@
  */
 package alphabetsoup.framework;
 
-import java.io.FileInputStream;
+import java.io.*;
 import java.lang.reflect.*;
 import java.util.*;
+import java.util.zip.*;
 
 /**SimulationWorld is the base class of the AlphabetSoup simulation itself.
  * This class should be extended to load and initialize all of the entities within
@@ -13,8 +14,10 @@ import java.util.*;
  * to advance the simulation forward in time.
  * @author Chris Hazard
  */
-public class SimulationWorld 
+public class SimulationWorld implements Serializable
 {
+	private static final long serialVersionUID = 1L;
+	
 	public Bucketbot bucketbots[] = null;
 	public LetterStation letterStations[] = null;
 	public WordStation wordStations[] = null;
@@ -22,20 +25,32 @@ public class SimulationWorld
 	public WordList wordList = null;		// LIST OF ALL WORDS TO BE PROCESSED IS HERE
 	protected List<LetterColor> letterColors;	/* letterColors is the list of probabilities of each color. the colorID is the color's index into this list */
 	protected List<Updateable> updateables;
+	protected UpdateScheduler updateScheduler = null;	//only used if useUpdateScheduler is set
+	protected boolean useUpdateScheduler;
+	protected boolean useLocalTimeStepping;	//each bucketbot advances on its own time step (requires the UpdateScheduler)
+	protected double localTimeStepMax;		//longest a bucketbot may go without being updated when using local time stepping
+	protected boolean usePairwiseTimeStep;	//global steps are bounded by how close the bucketbots are to each other
+	protected double sweptTimeStepMax;		//longest global step when moves are checked for collisions along their whole path
+	protected ParallelMotionPhase parallelMotionPhase = null;	//only used if bucketbots are moved in parallel
+	protected BatchedMotionPhase batchedMotionPhase = null;		//only used if bucketbots are moved in a batch
+	protected transient SimulationProfiler profiler = null;		//only used if profiling has been started
 	public Map map = null;
 	
 	private double currentTime = 0.0;
 	private double statisticsTime = 0.0;
+	private double warmupCutoffTime = Double.NaN;	//start of steady state, if it was found by an automatic warmup
+	
+	public MersenneTwisterFast rand = new MersenneTwisterFast();	//each simulation has its own random number stream
+	private LinkedHashMap<String, MersenneTwisterFast> randomStreams = null;	//only used with common random numbers
+	private long randomStreamSeed;
 	
-	public static MersenneTwisterFast rand = new MersenneTwisterFast();
+	//purposes which have their own random number streams with common random numbers
+	public static final String wordStream = "words";
+	public static final String letterColorStream = "letter colors";
+	public static final String inventoryStream = "inventory";
+	public static final String evasionStream = "evasion";
 	protected boolean usingGUI;
 	protected Properties params;	//parameters of the simulation
-	protected static SimulationWorld simulationWorld;
-	
-	public static SimulationWorld getSimulationWorld() 
-	{
-		return simulationWorld;
-	}
 	
 	public void resetStatistics() 
 	{
@@ -46,6 +61,7 @@ public class SimulationWorld
 		for(WordStation ws : wordStations) ws.resetStatistics();
 		for(Bucket b : buckets) b.resetStatistics();
 		wordList.resetStatistics();
+		if(profiler != null) profiler.reset();
 	}
 	
 	/**Builds the base for the simulation.  Loads in parameters from the specified configuration file.
@@ -54,27 +70,64 @@ public class SimulationWorld
 	 */
 	public SimulationWorld(String configuration_file_name) 
 	{
-		simulationWorld = this;
-		
-		//load in parameters from configuration file
-		params = new Properties();
-		try 
-		{
-			FileInputStream fis = new FileInputStream(configuration_file_name);
-			params.load(fis);
-		} catch(Throwable e) { System.out.println("could not open alphabetsoup.config"); System.exit(1); }
+		this(loadConfiguration(configuration_file_name));
+	}
+	
+	/**Builds the base for the simulation from parameters which have already been loaded.
+	 * Nothing is shared with any other SimulationWorld, so several may be built and run at once
+	 * (each on its own thread).
+	 * @param parameters parameters of the simulation, as would be read from a configuration file
+	 */
+	public SimulationWorld(Properties parameters) 
+	{
+		params = parameters;
 		
 		float map_width = Float.parseFloat(params.getProperty("map_width"));
 		float map_length = Float.parseFloat(params.getProperty("map_length"));
 		float tolerance = Float.parseFloat(params.getProperty("tolerance"));
 		float max_acceleration = Float.parseFloat( params.getProperty("max_acceleration"));
 		float max_velocity = Float.parseFloat( params.getProperty("max_velocity"));
-		map = new Map(map_width, map_length, tolerance, max_acceleration, max_velocity);
+		map = new Map(map_width, map_length, tolerance, max_acceleration, max_velocity,
+				params.getProperty("spatial_index_class", Quadtree.class.getName()));
 		
 		long random_seed = Integer.parseInt(params.getProperty("random_seed"));
 		if(random_seed != 0) rand.setSeed(random_seed);
+		if(Integer.parseInt(params.getProperty("common_random_numbers", "0")) == 1) {
+			//an unseeded simulation still needs a seed for the streams, so take one from the time as rand does
+			randomStreamSeed = (random_seed != 0) ? random_seed : System.nanoTime();
+			randomStreams = new LinkedHashMap<String, MersenneTwisterFast>();
+		}
+		
+		useUpdateScheduler = (Integer.parseInt(params.getProperty("use_update_scheduler", "0")) == 1);
+		useLocalTimeStepping = (Integer.parseInt(params.getProperty("use_local_time_stepping", "0")) == 1);
+		localTimeStepMax = Double.parseDouble(params.getProperty("local_time_step_max", "0.5"));
+		if(useLocalTimeStepping) useUpdateScheduler = true;
+		usePairwiseTimeStep = (Integer.parseInt(params.getProperty("use_pairwise_time_step", "0")) == 1);
+		map.setSweptCollisions(Integer.parseInt(params.getProperty("use_swept_collisions", "0")) == 1);
+		sweptTimeStepMax = Double.parseDouble(params.getProperty("swept_time_step_max", "0.5"));
+		
+		int parallel_update_threads = Integer.parseInt(params.getProperty("parallel_update_threads", "0"));
+		if(parallel_update_threads > 0) {
+			float parallel_tile_size = Float.parseFloat(params.getProperty("parallel_tile_size", "0"));
+			parallelMotionPhase = new ParallelMotionPhase(map, parallel_update_threads, parallel_tile_size);
+			//the parallel update moves every bucketbot on every step
+			useUpdateScheduler = false;
+			useLocalTimeStepping = false;
+		}
+		else if(Integer.parseInt(params.getProperty("use_batched_motion", "0")) == 1) {
+			batchedMotionPhase = new BatchedMotionPhase(map);
+			//as with the parallel update, every bucketbot is moved on every step
+			useUpdateScheduler = false;
+			useLocalTimeStepping = false;
+		}
+		
+		if(Integer.parseInt(params.getProperty("profile_updates", "0")) == 1)
+			startProfiling(Double.parseDouble(params.getProperty("profile_log_interval", "10")));
 		
-		wordList = (WordList)createClass(params.getProperty("word_list_class"));
+		if(randomStreams != null)
+			wordList = (WordList)createClass(params.getProperty("word_list_class"),
+					getRandomStream(wordStream, 0), getRandomStream(letterColorStream, 0), getRandomStream(inventoryStream, 0));
+		else wordList = (WordList)createClass(params.getProperty("word_list_class"), rand);
 		
 		int num_bucketbots = Integer.parseInt(params.getProperty("num_bucketbots"));
 		bucketbots = new Bucketbot[num_bucketbots];
@@ -106,6 +159,22 @@ public class SimulationWorld
 		}		
 	}
 
+	/**Loads in parameters from the specified configuration file.
+	 * @param configuration_file_name path of the configuration file to load
+	 * @return the parameters of the simulation
+	 */
+	public static Properties loadConfiguration(String configuration_file_name) 
+	{
+		Properties parameters = new Properties();
+		try 
+		{
+			FileInputStream fis = new FileInputStream(configuration_file_name);
+			parameters.load(fis);
+			fis.close();
+		} catch(Throwable e) { System.out.println("could not open alphabetsoup.config"); System.exit(1); }
+		return parameters;
+	}
+
 	/**Load a class with a constructor with any signature, as specified by parameters
 	 * java's reflection api SHOULD have this function, but it doesn't...
 	 * @param class_name name of the class to load
@@ -143,32 +212,337 @@ public class SimulationWorld
 	 * @param elapsed_time relative time to move the system forward
 	 */
 	public void update(double elapsed_time) {
+		updateUntil(currentTime + elapsed_time);
+	}
+	
+	/**Move the simulation forward until the specified time
+	 * @param update_finish_time absolute time to move the system forward to
+	 */
+	public void updateUntil(double update_finish_time) {
 		
 		//don't want to update less than the time required for something to move past 
 		// 1/3 of the tolerance in a given time interval
 		float minimumUpdateTime = map.getTolerance()/3 / map.getMaxVelocity();
 		
-		double update_finish_time = currentTime + elapsed_time;
+		//updateables is filled in by the subclass, so the scheduler can't be built until now
+		if(useUpdateScheduler && updateScheduler == null) {
+			updateScheduler = new UpdateScheduler(updateables);
+			updateScheduler.setProfiler(profiler);
+		}
+		
+		SimulationProfiler p = profiler;
 		while(currentTime < update_finish_time) {
+			if(p != null) p.startStep();
 			
 			//get the next event time
 			double next_time = update_finish_time;
 
 			//find the time of the earliest next event
-			for(Updateable u : updateables) next_time = Math.min(u.getNextEventTime(currentTime), next_time);
+			if(p != null) p.startSection();
+			if(updateScheduler != null) next_time = Math.min(updateScheduler.getNextEventTime(currentTime), next_time);
+			else for(Updateable u : updateables) next_time = Math.min(u.getNextEventTime(currentTime), next_time);
+			if(p != null) p.endSection(SimulationProfiler.nextEventTimeSection);
 			
-			//see if a potential collision will happen before the next event
-			double min_time_delta = Math.min( map.getShortestTimeWithoutCollision(), next_time - currentTime);
+			double min_time_delta;
+			if(useLocalTimeStepping) {
+				//each bucketbot has already scheduled itself to be updated before it could collide with anything,
+				// so just go until the next one is due
+				next_time = Math.min(updateScheduler.getNextWakeTime(), next_time);
+				min_time_delta = next_time - currentTime;
+			}
+			else {
+				//see if a potential collision will happen before the next event
+				if(p != null) p.startSection();
+				if(map.isUsingSweptCollisions())
+					//nothing can pass through anything else unseen, so only keep the steps short enough to steer
+					min_time_delta = Math.min(sweptTimeStepMax, next_time - currentTime);
+				else if(usePairwiseTimeStep)
+					min_time_delta = map.getShortestTimeWithoutCollision(next_time - currentTime);
+				else
+					min_time_delta = Math.min( map.getShortestTimeWithoutCollision(), next_time - currentTime);
+				if(p != null) p.endSection(SimulationProfiler.collisionCheckSection);
+			}
 			min_time_delta = Math.max(min_time_delta, minimumUpdateTime);	//make sure update rate never gets too slow
 
 			//update by at least a the minimum, but don't go past the next time
 			next_time = Math.min(update_finish_time, currentTime + min_time_delta);
 
 			//run up til the next event
-			for(Updateable u : updateables) u.update(currentTime, next_time);
+			if(updateScheduler != null) updateScheduler.update(currentTime, next_time);
+			else if(parallelMotionPhase != null || batchedMotionPhase != null) {
+				//move all the bucketbots first, then let everything act in the usual order
+				if(p != null) p.startSection();
+				if(parallelMotionPhase != null) {
+					parallelMotionPhase.moveBucketbots(bucketbots, currentTime, next_time);
+					if(p != null) p.endSection(SimulationProfiler.parallelMotionSection);
+				}
+				else {
+					batchedMotionPhase.moveBucketbots(bucketbots, currentTime, next_time);
+					if(p != null) p.endSection(SimulationProfiler.batchedMotionSection);
+				}
+				for(Updateable u : updateables) {
+					if(p != null) p.startSection();
+					if(u instanceof PhasedUpdateable) ((PhasedUpdateable)u).updateActions(currentTime, next_time);
+					else u.update(currentTime, next_time);
+					if(p != null) p.endSection(u.getClass());
+				}
+			}
+			else for(Updateable u : updateables) {
+				if(p != null) p.startSection();
+				u.update(currentTime, next_time);
+				if(p != null) p.endSection(u.getClass());
+			}
 			
+			if(p != null) p.endStep(next_time - currentTime, next_time);
 			currentTime = next_time;
+			if(!stepFinished()) break;
+		}
+	}
+	
+	/**Called at the end of each step of update, once everything has been updated to the current time,
+	 * so that subclasses can observe the simulation in a consistent state.
+	 * @return true to keep going, false to end the update early (at the end of this step)
+	 */
+	protected boolean stepFinished() {
+		return true;
+	}
+	
+	/**Returns true once the simulation doesn't need to be updated any further, such as when a warmup has
+	 * found what it was looking for, so that anything calling update repeatedly (such as the user interface)
+	 * knows to stop.
+	 * @return true if the simulation should not be updated any further
+	 */
+	public boolean isStopRequested() {
+		return false;
+	}
+	
+	/**Starts measuring where the time of update goes, and makes the readings available through JMX.
+	 * Replaces any profiler that was already started.
+	 * @param log_interval wall clock seconds between logging the readings, 0 to never log them
+	 * @return the profiler
+	 */
+	public SimulationProfiler startProfiling(double log_interval) {
+		stopProfiling();
+		profiler = new SimulationProfiler(log_interval);
+		profiler.register();
+		if(updateScheduler != null) updateScheduler.setProfiler(profiler);
+		return profiler;
+	}
+	
+	/**Stops measuring the time of update, and removes the readings from JMX.
+	 */
+	public void stopProfiling() {
+		if(profiler == null) return;
+		profiler.unregister();
+		profiler = null;
+		if(updateScheduler != null) updateScheduler.setProfiler(null);
+	}
+	
+	/**
+	 * @return the profiler measuring update, null if profiling has not been started
+	 */
+	public SimulationProfiler getProfiler() {
+		return profiler;
+	}
+	
+	/**Should be called whenever an Updateable is changed by something other than its own update
+	 * (for example, a station making a Bucketbot wait), so that the change is seen on the next step.
+	 * Does nothing unless the UpdateScheduler is being used.
+	 * @param u Updateable which has changed
+	 */
+	public void rescheduleUpdateable(Updateable u) {
+		if(updateScheduler != null) updateScheduler.reschedule(u);
+	}
+	
+	/**Writes the complete state of the simulation (everything reachable from the SimulationWorld, including
+	 * the random number generator) to a compressed binary snapshot file.  Restoring it with loadSnapshot gives
+	 * a simulation that continues exactly as this one would.  Snapshots can only be restored by the same
+	 * build of the code, and dictionaries are reloaded from their files rather than stored.
+	 * @param file_name path of the snapshot file to write
+	 * @throws IOException if the file could not be written
+	 */
+	public void saveSnapshot(String file_name) throws IOException 
+	{
+		OutputStream out = new BufferedOutputStream(new FileOutputStream(file_name));
+		try {
+			writeSnapshot(out);
+		}
+		finally {
+			out.close();
+		}
+	}
+	
+	/**Restores a simulation from a snapshot file written by saveSnapshot.
+	 * @param file_name path of the snapshot file to read
+	 * @return the restored SimulationWorld
+	 * @throws IOException if the file could not be read or is not a valid snapshot
+	 */
+	public static SimulationWorld loadSnapshot(String file_name) throws IOException 
+	{
+		InputStream in = new BufferedInputStream(new FileInputStream(file_name));
+		try {
+			return readSnapshot(in);
 		}
+		finally {
+			in.close();
+		}
+	}
+	
+	/**Writes a compressed snapshot of the simulation to the stream.
+	 * @param stream stream to write to (not closed)
+	 * @throws IOException if the stream could not be written
+	 */
+	public void writeSnapshot(OutputStream stream) throws IOException 
+	{
+		GZIPOutputStream zip = new GZIPOutputStream(stream);
+		ObjectOutputStream out = new ObjectOutputStream(zip);
+		out.writeObject(this);
+		out.flush();
+		zip.finish();
+	}
+	
+	/**Reads a compressed snapshot of a simulation from the stream.
+	 * @param stream stream to read from (not closed)
+	 * @return the restored SimulationWorld
+	 * @throws IOException if the stream could not be read or is not a valid snapshot
+	 */
+	public static SimulationWorld readSnapshot(InputStream stream) throws IOException 
+	{
+		ObjectInputStream in = new ObjectInputStream(new GZIPInputStream(stream));
+		try {
+			return (SimulationWorld)in.readObject();
+		} catch(ClassNotFoundException e) {
+			throw new IOException("snapshot contains unknown class " + e.getMessage());
+		}
+	}
+	
+	/**Returns an uncompressed snapshot of the simulation held in memory, from which any number of
+	 * independent copies can be made with fromSnapshotBytes.
+	 * @return the serialized simulation
+	 */
+	public byte[] toSnapshotBytes() 
+	{
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			ObjectOutputStream out = new ObjectOutputStream(bytes);
+			out.writeObject(this);
+			out.close();
+			return bytes.toByteArray();
+		} catch(IOException e) {
+			throw new RuntimeException("could not copy simulation. " + e, e);
+		}
+	}
+	
+	/**Builds a new, independent simulation from a snapshot made by toSnapshotBytes.
+	 * The same bytes may be used any number of times, and from several threads at once.
+	 * @param snapshot serialized simulation
+	 * @return the restored SimulationWorld
+	 */
+	public static SimulationWorld fromSnapshotBytes(byte snapshot[]) 
+	{
+		try {
+			ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(snapshot));
+			SimulationWorld sw = (SimulationWorld)in.readObject();
+			//only the original simulation is attached to the user interface
+			sw.usingGUI = false;
+			return sw;
+		} catch(Exception e) {
+			throw new RuntimeException("could not copy simulation. " + e, e);
+		}
+	}
+	
+	/**Makes a deep copy of the simulation in its current state, sharing nothing with this one
+	 * (its own random number generator, bucketbots, buckets, stations, quadtrees, etc.).
+	 * Left alone, the copy continues exactly as this simulation would, so it can be used to
+	 * branch off "what-if" experiments from a warmed up simulation.
+	 * @return the copy
+	 */
+	public SimulationWorld fork() 
+	{
+		return fromSnapshotBytes(toSnapshotBytes());
+	}
+	
+	/**Makes a deep copy of the simulation as fork does, but with its random number generator reseeded,
+	 * (along with any other random number streams), so that the copy diverges from this simulation.
+	 * @param random_seed seed for the random number generator of the copy
+	 * @return the copy
+	 */
+	public SimulationWorld fork(long random_seed) 
+	{
+		SimulationWorld sw = fork();
+		sw.setRandomSeed(random_seed);
+		return sw;
+	}
+	
+	/**Makes several deep copies of the simulation, serializing it only once.
+	 * Copy i has its random number generators reseeded with first_random_seed + i.
+	 * @param num_forks number of copies to make
+	 * @param first_random_seed seed for the first copy
+	 * @return the copies
+	 */
+	public List<SimulationWorld> fork(int num_forks, long first_random_seed) 
+	{
+		byte snapshot[] = toSnapshotBytes();
+		List<SimulationWorld> forks = new ArrayList<SimulationWorld>(num_forks);
+		for(int i = 0; i < num_forks; i++) 
+		{
+			SimulationWorld sw = fromSnapshotBytes(snapshot);
+			sw.setRandomSeed(first_random_seed + i);
+			forks.add(sw);
+		}
+		return forks;
+	}
+	
+	/**Gets the random number stream to use for one purpose.  With common random numbers (common_random_numbers=1),
+	 * each purpose and index (such as the number of a bucketbot) has its own stream, seeded from the random seed
+	 * and the purpose, so that how many random numbers one part of the simulation uses doesn't change the numbers
+	 * any other part gets.  Two runs with the same seed then see the same words and inventory even if their
+	 * bucketbots behave differently.  Otherwise, every purpose shares rand.
+	 * @param purpose what the random numbers are for, such as wordStream
+	 * @param index which of the things with that purpose the stream is for
+	 * @return the random number generator
+	 */
+	public MersenneTwisterFast getRandomStream(String purpose, int index) 
+	{
+		if(randomStreams == null) return rand;
+		String key = purpose + " " + index;
+		MersenneTwisterFast r = randomStreams.get(key);
+		if(r == null) 
+		{
+			r = new MersenneTwisterFast(getRandomStreamSeed(key));
+			randomStreams.put(key, r);
+		}
+		return r;
+	}
+	
+	private int[] getRandomStreamSeed(String key) 
+	{
+		return new int[] {(int)randomStreamSeed, (int)(randomStreamSeed >>> 32), key.hashCode()};
+	}
+	
+	/**Reseeds rand, along with every stream given out by getRandomStream.
+	 * @param random_seed new seed
+	 */
+	public void setRandomSeed(long random_seed) 
+	{
+		rand.setSeed(random_seed);
+		if(randomStreams == null) return;
+		randomStreamSeed = random_seed;
+		for(String key : randomStreams.keySet())
+			randomStreams.get(key).setSeed(getRandomStreamSeed(key));
+	}
+	
+	/**Replaces an Updateable with another one which takes over its job, in the same position in the
+	 * update order, such as when a fork switches to a different manager.
+	 * @param old_updateable Updateable to remove
+	 * @param new_updateable Updateable to put in its place
+	 */
+	protected void replaceUpdateable(Updateable old_updateable, Updateable new_updateable) 
+	{
+		int index = updateables.indexOf(old_updateable);
+		if(index < 0) throw new IllegalArgumentException("not in the simulation: " + old_updateable);
+		updateables.set(index, new_updateable);
+		if(updateScheduler != null) updateScheduler.replace(old_updateable, new_updateable);
 	}
 	
 	/**populates buckets with completely random inventory
@@ -178,12 +552,13 @@ public class SimulationWorld
 	public void initializeBucketContentsRandom(float initial_inventory, int bundle_size) 
 	{
 		int initial_num_letter_bundles = (int)(initial_inventory * buckets.length * buckets[0].getCapacity() / bundle_size + 0.5f);
+		MersenneTwisterFast inventory_rand = getRandomStream(inventoryStream, 0);
 		for(int i = 0; i < initial_num_letter_bundles; i++) 
 		{
 			while(true) 
 			{
 				//pick random bucket
-				Bucket b = buckets[rand.nextInt(buckets.length)];
+				Bucket b = buckets[inventory_rand.nextInt(buckets.length)];
 				if(b.getLetters().size() + bundle_size > b.getCapacity()) continue;
 				
 				//give it a new letter
@@ -314,6 +689,22 @@ public class SimulationWorld
 		return currentTime;
 	}
 
+	/**
+	 * @return Returns whether each bucketbot is advanced on its own time step
+	 */
+	public boolean isUsingLocalTimeStepping() 
+	{
+		return useLocalTimeStepping;
+	}
+
+	/**
+	 * @return Returns the longest time a bucketbot may go without being updated under local time stepping
+	 */
+	public double getLocalTimeStepMax() 
+	{
+		return localTimeStepMax;
+	}
+
 	/**
 	 * @return Returns the usingGUI.
 	 */
@@ -329,4 +720,20 @@ public class SimulationWorld
 	{
 		return statisticsTime;
 	}
+
+	/**
+	 * @return the time steady state was found to start at by an automatic warmup, NaN if none was used
+	 */
+	public double getWarmupCutoffTime() 
+	{
+		return warmupCutoffTime;
+	}
+
+	/**
+	 * @param warmup_cutoff_time the time steady state was found to start at
+	 */
+	public void setWarmupCutoffTime(double warmup_cutoff_time) 
+	{
+		warmupCutoffTime = warmup_cutoff_time;
+	}
 }
@@ -0,0 +1,86 @@
+/**
+ *
+ */
+package alphabetsoup.framework;
+
+import java.util.List;
+
+/**SpatialIndex is an interface for the structures the Map keeps its Bucketbots and Buckets in,
+ * used for fast lookup of local interactions between objects.
+ * Implementations are chosen with spatial_index_class, and must have a constructor taking
+ * the width and height of the area as floats.
+ * A Circle may only be in one SpatialIndex at a time, and once in one, must only be moved with moveTo.
+ */
+public interface SpatialIndex {
+
+	/**Adds a circle object to the index
+	 * @param c circle object to add
+	 */
+	public void addCircleObject(Circle c);
+
+	/**Adds a batch of circle objects to the index, in order, building the index once for all of them
+	 * rather than after each one.  The index ends up the same as if they were added one at a time.
+	 * @param circles circle objects to add
+	 */
+	public void addCircleObjects(List<? extends Circle> circles);
+
+	/**Removes a circle object from the index
+	 * @param c circle object to remove
+	 */
+	public void removeCircleObject(Circle c);
+
+	/**Returns true if Circle c moving to location x_new, y_new will not collide with another Circle,
+	 * false if it will collide.
+	 * @param c Circle to check against for collisions.
+	 * @param x_new new x position.
+	 * @param y_new new y position.
+	 * @return true if the move is valid
+	 */
+	public boolean isValidMove(Circle c, float x_new, float y_new);
+
+	/**Finds the first contact of Circle c moving in a straight line from its current location to x_new, y_new
+	 * over the time from start_time to end_time with any other Circle, so that a long move can't pass through anything.
+	 * Other Circles which were moved over the same time are taken to have moved in straight lines along with it,
+	 * and the rest to stay where they are (see Circle.getContactFraction).
+	 * Circles it already overlaps only count if the move brings it closer to them.
+	 * @param c Circle to move
+	 * @param x_new new x position
+	 * @param y_new new y position
+	 * @param max_travel farthest any other Circle could have moved over the time
+	 * @param start_time time the move starts at
+	 * @param end_time time the move ends at
+	 * @return fraction of the move (0 to 1) at the first contact, or Float.POSITIVE_INFINITY if there is none
+	 */
+	public float getFirstContact(Circle c, float x_new, float y_new, float max_travel, double start_time, double end_time);
+
+	/**Moves Circle c from its current location to the position specified by x_new, y_new
+	 * @param c Circle to move
+	 * @param x_new new x position
+	 * @param y_new new y position
+	 */
+	public void moveTo(Circle c, float x_new, float y_new);
+
+	/**Brings the structure of the index up to date with the objects that have moved since it was last called.
+	 */
+	public void updateTree();
+
+	/**Returns a list of objects within the specified Circle.
+	 * @param c Circle to find objects within
+	 * @return List<Circle> containing all objects within the specified bounds
+	 */
+	public List<Circle> getObjectsWithinCircle(Circle c);
+
+	/**Adds the objects within a distance of a point to a list, without allocating anything
+	 * (other than to grow the list), so that the same list can be reused for every query.
+	 * @param x x coordinate of the center
+	 * @param y y coordinate of the center
+	 * @param distance distance from (x,y); objects are found if their edges are within it
+	 * @param excluded object to leave out (such as the one asking), or null
+	 * @param in_view list to add the objects to
+	 */
+	public void getObjectsWithinDistance(float x, float y, float distance, Circle excluded, List<Circle> in_view);
+
+	/**Renders the structure of the index.
+	 */
+	public void render();
+}
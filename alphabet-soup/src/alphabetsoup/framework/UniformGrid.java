@@ -0,0 +1,284 @@
+/**
+ *
+ */
+package alphabetsoup.framework;
+
+import java.io.Serializable;
+import java.util.*;
+
+import org.lwjgl.opengl.GL11;
+
+/**UniformGrid is a SpatialIndex which divides the area into square cells of the same size, and keeps each
+ * object in the cell holding its center.  The cells are twice as wide as the largest object added, so checking
+ * a move of an object the size of the others only looks at the 3x3 cells around it, and moving an object only
+ * touches the one or two cells it was and will be in, without any tree to walk or rebalance.
+ * This suits the Map well, since its Bucketbots (and its Buckets) are all about the same size.<br>
+ * The cell size is chosen when the first object is added, and the grid is rebuilt if a larger object is
+ * added later.  The objects of each cell are kept in parallel arrays of their positions and radii,
+ * as in the leaves of a Quadtree.
+ */
+public class UniformGrid implements SpatialIndex, Serializable {
+	private static final long serialVersionUID = 1L;
+
+	/**Most cells the grid may have; the cells are made larger on very large maps to stay within it.
+	 */
+	public final static int maxCells = 1 << 22;
+
+	private float width, height;
+	private float cellSize = 0.0f;	//0 until the first object is added
+	private int numCellsX = 0, numCellsY = 0;
+	private float largestRadius = 0.0f;
+
+	//objects of each cell, in parallel arrays as in QuadtreeNode; null until a cell has had an object
+	private Circle cellObjects[][];
+	private float cellX[][], cellY[][], cellRadius[][];
+	private int cellCount[];
+
+	/**Constructs a UniformGrid with the dimensions specified.
+	 * @param width Width of the grid area
+	 * @param height Height of the grid area
+	 */
+	public UniformGrid(float width, float height) {
+		this.width = width;
+		this.height = height;
+	}
+
+	/**Divides the area into cells twice as wide as the largest object, and puts any objects
+	 * already in the grid into their new cells.
+	 */
+	private void buildCells() {
+		List<Circle> circles = new ArrayList<Circle>();
+		for(int i = 0; i < numCellsX * numCellsY; i++)
+			for(int j = 0; j < cellCount[i]; j++)
+				circles.add(cellObjects[i][j]);
+
+		cellSize = Math.max(2 * largestRadius, Float.MIN_NORMAL);
+		while(Math.ceil(width / cellSize) * Math.ceil(height / cellSize) > maxCells)
+			cellSize *= 2;
+		numCellsX = Math.max((int)Math.ceil(width / cellSize), 1);
+		numCellsY = Math.max((int)Math.ceil(height / cellSize), 1);
+
+		int num_cells = numCellsX * numCellsY;
+		cellObjects = new Circle[num_cells][];
+		cellX = new float[num_cells][];	cellY = new float[num_cells][];	cellRadius = new float[num_cells][];
+		cellCount = new int[num_cells];
+
+		for(Circle c : circles)
+			addToCell(getCell(c.getX(), c.getY()), c);
+	}
+
+	private int getCellX(float x) {
+		return Math.min(Math.max((int)(x / cellSize), 0), numCellsX - 1);
+	}
+
+	private int getCellY(float y) {
+		return Math.min(Math.max((int)(y / cellSize), 0), numCellsY - 1);
+	}
+
+	private int getCell(float x, float y) {
+		return getCellY(y) * numCellsX + getCellX(x);
+	}
+
+	/**Adds a Circle to the arrays of a cell, growing them if needed.
+	 */
+	private void addToCell(int cell, Circle c) {
+		int n = cellCount[cell];
+		if(cellObjects[cell] == null) {
+			int capacity = 4;
+			cellObjects[cell] = new Circle[capacity];
+			cellX[cell] = new float[capacity];	cellY[cell] = new float[capacity];	cellRadius[cell] = new float[capacity];
+		}
+		else if(n == cellObjects[cell].length) {
+			cellObjects[cell] = Arrays.copyOf(cellObjects[cell], 2 * n);
+			cellX[cell] = Arrays.copyOf(cellX[cell], 2 * n);
+			cellY[cell] = Arrays.copyOf(cellY[cell], 2 * n);
+			cellRadius[cell] = Arrays.copyOf(cellRadius[cell], 2 * n);
+		}
+		cellObjects[cell][n] = c;
+		cellX[cell][n] = c.getX();	cellY[cell][n] = c.getY();	cellRadius[cell][n] = c.getRadius();
+		c.spatialIndexSlot = n;
+		cellCount[cell] = n + 1;
+	}
+
+	/**Removes a Circle from the arrays of a cell by moving the last object of the cell into its place.
+	 */
+	private void removeFromCell(int cell, Circle c) {
+		int i = c.spatialIndexSlot;
+		int n = cellCount[cell];
+		if(i < 0 || i >= n || cellObjects[cell][i] != c)
+			return;
+		n--;
+		Circle objects[] = cellObjects[cell];
+		objects[i] = objects[n];	cellX[cell][i] = cellX[cell][n];
+		cellY[cell][i] = cellY[cell][n];	cellRadius[cell][i] = cellRadius[cell][n];
+		objects[i].spatialIndexSlot = i;
+		objects[n] = null;
+		cellCount[cell] = n;
+		c.spatialIndexSlot = -1;
+	}
+
+	/* (non-Javadoc)
+	 * @see alphabetsoup.framework.SpatialIndex#addCircleObject(alphabetsoup.framework.Circle)
+	 */
+	public void addCircleObject(Circle c) {
+		if(cellSize == 0.0f || c.getRadius() > largestRadius) {
+			largestRadius = Math.max(largestRadius, c.getRadius());
+			buildCells();
+		}
+		addToCell(getCell(c.getX(), c.getY()), c);
+	}
+
+	/* (non-Javadoc)
+	 * @see alphabetsoup.framework.SpatialIndex#addCircleObjects(java.util.List)
+	 */
+	public void addCircleObjects(List<? extends Circle> circles) {
+		//only rebuild the cells once, for the largest of the new objects
+		float largest_new = 0.0f;
+		for(Circle c : circles)
+			largest_new = Math.max(largest_new, c.getRadius());
+		if(circles.size() > 0 && (cellSize == 0.0f || largest_new > largestRadius)) {
+			largestRadius = Math.max(largestRadius, largest_new);
+			buildCells();
+		}
+		for(Circle c : circles)
+			addToCell(getCell(c.getX(), c.getY()), c);
+	}
+
+	/* (non-Javadoc)
+	 * @see alphabetsoup.framework.SpatialIndex#removeCircleObject(alphabetsoup.framework.Circle)
+	 */
+	public void removeCircleObject(Circle c) {
+		if(cellSize == 0.0f) return;
+		removeFromCell(getCell(c.getX(), c.getY()), c);
+	}
+
+	/* (non-Javadoc)
+	 * @see alphabetsoup.framework.SpatialIndex#isValidMove(alphabetsoup.framework.Circle, float, float)
+	 */
+	public boolean isValidMove(Circle c, float x_new, float y_new) {
+		if(cellSize == 0.0f) return true;
+		float radius = c.getRadius();
+		float reach = radius + largestRadius;
+		int cx1 = getCellX(x_new - reach), cx2 = getCellX(x_new + reach);
+		int cy1 = getCellY(y_new - reach), cy2 = getCellY(y_new + reach);
+		for(int cy = cy1; cy <= cy2; cy++)
+			for(int cell = cy * numCellsX + cx1; cell <= cy * numCellsX + cx2; cell++) {
+				Circle objects[] = cellObjects[cell];
+				float xs[] = cellX[cell], ys[] = cellY[cell], radii[] = cellRadius[cell];
+				for(int i = 0; i < cellCount[cell]; i++) {
+					//don't detect collision with self
+					if(objects[i] == c)
+						continue;
+					float dx = xs[i] - x_new, dy = ys[i] - y_new, r = radii[i] + radius;
+					if(dx * dx + dy * dy <= r * r)
+						return false;
+				}
+			}
+		return true;
+	}
+
+	/* (non-Javadoc)
+	 * @see alphabetsoup.framework.SpatialIndex#getFirstContact(alphabetsoup.framework.Circle, float, float, float, double, double)
+	 */
+	public float getFirstContact(Circle c, float x_new, float y_new, float max_travel, double start_time, double end_time) {
+		if(cellSize == 0.0f) return Float.POSITIVE_INFINITY;
+		float radius = c.getRadius();
+		float reach = radius + largestRadius + max_travel;
+		float x_old = c.getX(), y_old = c.getY();
+		int cx1 = getCellX(Math.min(x_old, x_new) - reach), cx2 = getCellX(Math.max(x_old, x_new) + reach);
+		int cy1 = getCellY(Math.min(y_old, y_new) - reach), cy2 = getCellY(Math.max(y_old, y_new) + reach);
+		float first = Float.POSITIVE_INFINITY;
+		for(int cy = cy1; cy <= cy2; cy++)
+			for(int cell = cy * numCellsX + cx1; cell <= cy * numCellsX + cx2; cell++) {
+				Circle objects[] = cellObjects[cell];
+				for(int i = 0; i < cellCount[cell]; i++) {
+					//don't detect collision with self
+					if(objects[i] == c)
+						continue;
+					first = Math.min(first, objects[i].getContactFraction(radius, x_old, y_old, x_new, y_new, start_time, end_time));
+				}
+			}
+		return first;
+	}
+
+	/* (non-Javadoc)
+	 * @see alphabetsoup.framework.SpatialIndex#moveTo(alphabetsoup.framework.Circle, float, float)
+	 */
+	public void moveTo(Circle c, float x_new, float y_new) {
+		int old_cell = getCell(c.getX(), c.getY());
+		int new_cell = getCell(x_new, y_new);
+		int i = c.spatialIndexSlot;
+		if(old_cell == new_cell && i >= 0 && i < cellCount[old_cell] && cellObjects[old_cell][i] == c) {
+			//staying in the same cell, so just update the position
+			cellX[old_cell][i] = x_new;	cellY[old_cell][i] = y_new;
+			c.setX(x_new);	c.setY(y_new);
+			return;
+		}
+		removeFromCell(old_cell, c);
+		c.setX(x_new);	c.setY(y_new);
+		addToCell(new_cell, c);
+	}
+
+	/* (non-Javadoc)
+	 * @see alphabetsoup.framework.SpatialIndex#updateTree()
+	 */
+	public void updateTree() {
+		//the cells never change, so there is nothing to rebalance
+	}
+
+	/* (non-Javadoc)
+	 * @see alphabetsoup.framework.SpatialIndex#getObjectsWithinCircle(alphabetsoup.framework.Circle)
+	 */
+	public List<Circle> getObjectsWithinCircle(Circle c) {
+		List<Circle> in_view = new ArrayList<Circle>();
+		getObjectsWithinDistance(c.getX(), c.getY(), c.getRadius(), c, in_view);
+		return in_view;
+	}
+
+	/* (non-Javadoc)
+	 * @see alphabetsoup.framework.SpatialIndex#getObjectsWithinDistance(float, float, float, alphabetsoup.framework.Circle, java.util.List)
+	 */
+	public void getObjectsWithinDistance(float x, float y, float radius, Circle excluded, List<Circle> in_view) {
+		if(cellSize == 0.0f) return;
+		float reach = radius + largestRadius;
+		int cx1 = getCellX(x - reach), cx2 = getCellX(x + reach);
+		int cy1 = getCellY(y - reach), cy2 = getCellY(y + reach);
+		for(int cy = cy1; cy <= cy2; cy++)
+			for(int cell = cy * numCellsX + cx1; cell <= cy * numCellsX + cx2; cell++) {
+				Circle objects[] = cellObjects[cell];
+				float xs[] = cellX[cell], ys[] = cellY[cell], radii[] = cellRadius[cell];
+				for(int i = 0; i < cellCount[cell]; i++) {
+					if(objects[i] == excluded)
+						continue;
+					float dx = xs[i] - x, dy = ys[i] - y, r = radii[i] + radius;
+					if(dx * dx + dy * dy <= r * r)
+						in_view.add(objects[i]);
+				}
+			}
+	}
+
+	/**Renders the cells which hold any objects.
+	 */
+	public void render() {
+		GL11.glPolygonMode(GL11.GL_FRONT, GL11.GL_LINE);
+		GL11.glColor4f(0.5f, 0.5f, 0.5f, 1.0f);
+		GL11.glBegin(GL11.GL_QUADS);
+		for(int cy = 0; cy < numCellsY; cy++)
+			for(int cx = 0; cx < numCellsX; cx++) {
+				if(cellCount[cy * numCellsX + cx] == 0) continue;
+				GL11.glVertex2f(cx * cellSize, cy * cellSize);
+				GL11.glVertex2f((cx + 1) * cellSize, cy * cellSize);
+				GL11.glVertex2f((cx + 1) * cellSize, (cy + 1) * cellSize);
+				GL11.glVertex2f(cx * cellSize, (cy + 1) * cellSize);
+			}
+		GL11.glEnd();
+		GL11.glPolygonMode(GL11.GL_FRONT, GL11.GL_FILL);
+	}
+
+	/**
+	 * @return width of each cell, 0 if no objects have been added yet
+	 */
+	public float getCellSize() {
+		return cellSize;
+	}
+}
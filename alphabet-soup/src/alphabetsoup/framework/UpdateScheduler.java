@@ -0,0 +1,245 @@
+/**
+ *
+ */
+package alphabetsoup.framework;
+
+import java.io.Serializable;
+import java.util.*;
+
+/**UpdateScheduler is an alternative to scanning every Updateable on every step of SimulationWorld.update.
+ * Each Updateable is given a slot (its index in the list it was built from), and the next event time
+ * of every slot is kept in a heap, so the earliest event is found without querying everything.
+ * Schedulable objects that will not do anything on their next update are put to sleep in a second heap
+ * until they are due.  Everything that is awake is updated in slot order, exactly as the plain loop would,
+ * so the same seed produces the same simulation.<br>
+ * The next event time of a slot is only recomputed when it was updated, when its previously reported
+ * event has passed, or when it has been rescheduled because something else changed it.
+ */
+public class UpdateScheduler implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	private Updateable updateables[];
+	private boolean schedulable[];
+	private HashMap<Updateable, Integer> slots;
+
+	private SlotHeap eventTimes;	//next event time of each slot with a pending event
+	private SlotHeap wakeTimes;		//next update time of each sleeping slot
+	private BitSet awake;			//slots that are updated each step
+	private BitSet dirty;			//slots whose next event time needs to be recomputed
+	private int dueSlots[];			//used by getNextEventTime to requery slots whose events have passed
+	private transient SimulationProfiler profiler = null;	//times each update if set
+
+	/**Builds a scheduler over the given Updateables.  The order of the list is the order in which
+	 * the Updateables will be updated within each step.
+	 * @param updateable_list Updateables to schedule
+	 */
+	public UpdateScheduler(List<Updateable> updateable_list) {
+		int n = updateable_list.size();
+		updateables = updateable_list.toArray(new Updateable[n]);
+		schedulable = new boolean[n];
+		slots = new HashMap<Updateable, Integer>(2*n);
+		eventTimes = new SlotHeap(n);
+		wakeTimes = new SlotHeap(n);
+		awake = new BitSet(n);
+		dirty = new BitSet(n);
+		dueSlots = new int[n];
+
+		for(int i = 0; i < n; i++) {
+			schedulable[i] = (updateables[i] instanceof Schedulable);
+			slots.put(updateables[i], i);
+		}
+		//everything starts awake, and nothing is known about the event times yet
+		awake.set(0, n);
+		dirty.set(0, n);
+	}
+
+	/**Gets the time of the earliest event of any of the scheduled Updateables.
+	 * @param cur_time the current system time
+	 * @return the absolute time of the soonest event, Double.POSITIVE_INFINITY if none are pending
+	 */
+	public double getNextEventTime(double cur_time) {
+		//recompute the event times of anything that may have changed
+		for(int i = dirty.nextSetBit(0); i >= 0; i = dirty.nextSetBit(i+1))
+			eventTimes.set(i, updateables[i].getNextEventTime(cur_time));
+		dirty.clear();
+
+		//any event that has already passed is stale; query each of those once
+		int num_due = 0;
+		while(!eventTimes.isEmpty() && eventTimes.getMinKey() <= cur_time)
+			dueSlots[num_due++] = eventTimes.removeMin();
+		for(int i = 0; i < num_due; i++)
+			eventTimes.set(dueSlots[i], updateables[dueSlots[i]].getNextEventTime(cur_time));
+
+		if(eventTimes.isEmpty()) return Double.POSITIVE_INFINITY;
+		return eventTimes.getMinKey();
+	}
+
+	/**Gets the time at which the next sleeping Schedulable needs to be updated.
+	 * @return the absolute time of the soonest wake up, Double.POSITIVE_INFINITY if nothing is sleeping
+	 */
+	public double getNextWakeTime() {
+		if(wakeTimes.isEmpty()) return Double.POSITIVE_INFINITY;
+		return wakeTimes.getMinKey();
+	}
+
+	/**Updates all of the Updateables that are awake or that become due by cur_time, in slot order.
+	 * @param last_time absolute time all objects were last updated
+	 * @param cur_time current system time to update to
+	 */
+	public void update(double last_time, double cur_time) {
+		//wake up anything that is due by the end of this step
+		while(!wakeTimes.isEmpty() && wakeTimes.getMinKey() <= cur_time)
+			awake.set(wakeTimes.removeMin());
+
+		for(int i = awake.nextSetBit(0); i >= 0; i = awake.nextSetBit(i+1)) {
+			Updateable u = updateables[i];
+			if(profiler != null) profiler.startSection();
+			u.update(last_time, cur_time);
+			if(profiler != null) profiler.endSection(u.getClass());
+			dirty.set(i);
+
+			//put it to sleep if it won't do anything for a while
+			if(schedulable[i]) {
+				double next_update_time = ((Schedulable)u).getNextUpdateTime(cur_time);
+				if(next_update_time > cur_time) {
+					awake.clear(i);
+					wakeTimes.set(i, next_update_time);
+				}
+			}
+		}
+	}
+
+	/**Sets the profiler to time the update of each Updateable with.
+	 * @param p profiler, or null to stop timing
+	 */
+	public void setProfiler(SimulationProfiler p) {
+		profiler = p;
+	}
+
+	/**Should be called whenever an Updateable is changed by something other than its own update,
+	 * such that its next event time or next update time may have changed.  The Updateable is woken up
+	 * and its next event time is recomputed before the next step.
+	 * @param u Updateable which has changed
+	 */
+	public void reschedule(Updateable u) {
+		Integer slot = slots.get(u);
+		if(slot == null) return;
+		dirty.set(slot);
+		awake.set(slot);
+		wakeTimes.remove(slot);
+	}
+
+	/**Puts a new Updateable in the slot of an old one, keeping its place in the update order.
+	 * The new Updateable is woken up and its next event time is recomputed before the next step.
+	 * @param old_updateable Updateable being replaced
+	 * @param new_updateable Updateable taking its place
+	 */
+	public void replace(Updateable old_updateable, Updateable new_updateable) {
+		Integer slot = slots.remove(old_updateable);
+		if(slot == null) return;
+		updateables[slot] = new_updateable;
+		schedulable[slot] = (new_updateable instanceof Schedulable);
+		slots.put(new_updateable, slot);
+		reschedule(new_updateable);
+	}
+
+	/**SlotHeap is a binary min-heap of slot numbers keyed by time, which keeps track of where
+	 * each slot is in the heap so that the key of any slot can be changed or removed in O(log n).
+	 * Slots with an infinite key are not kept in the heap.
+	 */
+	private static class SlotHeap implements Serializable {
+		private static final long serialVersionUID = 1L;
+		
+		private int heap[];
+		private int position[];		//index of each slot in heap, -1 if not in the heap
+		private double key[];
+		private int size = 0;
+
+		public SlotHeap(int capacity) {
+			heap = new int[capacity];
+			position = new int[capacity];
+			key = new double[capacity];
+			Arrays.fill(position, -1);
+		}
+
+		public boolean isEmpty() {
+			return size == 0;
+		}
+
+		public double getMinKey() {
+			return key[heap[0]];
+		}
+
+		public int removeMin() {
+			int slot = heap[0];
+			remove(slot);
+			return slot;
+		}
+
+		/**Sets the key of slot, adding it to the heap if needed, or removing it if the key is infinite
+		 */
+		public void set(int slot, double k) {
+			if(k == Double.POSITIVE_INFINITY) {
+				remove(slot);
+				return;
+			}
+
+			if(position[slot] < 0) {
+				heap[size] = slot;
+				position[slot] = size;
+				size++;
+				key[slot] = k;
+				siftUp(position[slot]);
+				return;
+			}
+
+			double old_key = key[slot];
+			key[slot] = k;
+			if(k < old_key) siftUp(position[slot]);
+			else siftDown(position[slot]);
+		}
+
+		public void remove(int slot) {
+			int index = position[slot];
+			if(index < 0) return;
+			position[slot] = -1;
+			size--;
+			if(index == size) return;
+
+			//move the last element into the hole and restore the heap property
+			int moved = heap[size];
+			heap[index] = moved;
+			position[moved] = index;
+			siftUp(index);
+			siftDown(position[moved]);
+		}
+
+		private void siftUp(int index) {
+			int slot = heap[index];
+			while(index > 0) {
+				int parent = (index - 1) / 2;
+				if(key[heap[parent]] <= key[slot]) break;
+				heap[index] = heap[parent];
+				position[heap[index]] = index;
+				index = parent;
+			}
+			heap[index] = slot;
+			position[slot] = index;
+		}
+
+		private void siftDown(int index) {
+			int slot = heap[index];
+			while(true) {
+				int child = 2*index + 1;
+				if(child >= size) break;
+				if(child + 1 < size && key[heap[child+1]] < key[heap[child]]) child++;
+				if(key[slot] <= key[heap[child]]) break;
+				heap[index] = heap[child];
+				position[heap[index]] = index;
+				index = child;
+			}
+			heap[index] = slot;
+			position[slot] = index;
+		}
+	}
+}
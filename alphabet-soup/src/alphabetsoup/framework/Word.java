@@ -3,13 +3,15 @@
  */
 package alphabetsoup.framework;
 
+import java.io.Serializable;
 import java.util.*;
 
 /**The class Word contains Letter objects that make up a word that must be completed.
  * Word also keeps track of the Letter objects given to it for the purpose of completing the word. 
  * @author Chris Hazard
  */
-public class Word {
+public class Word implements Serializable {
+	private static final long serialVersionUID = 1L;
 	
 	protected Letter originalLetters[] = null;
 	protected boolean completedLetters[] = null;
@@ -19,12 +21,12 @@ public class Word {
 	 * @param colors Map with keys being Letter.Color, and values being a float representing
 	 * the corresponding probability that the Color will be selected.
 	 * The probabilities specified should add up to 1.0.
+	 * @param rand random number generator of the simulation the word belongs to
 	 */
-	public Word(String s, List<LetterColor> colors) {
+	public Word(String s, List<LetterColor> colors, MersenneTwisterFast rand) {
 		originalLetters = new Letter[s.length()];
 		completedLetters = new boolean[s.length()];
 		
-		MersenneTwisterFast rand = SimulationWorld.rand;
 		//add each letter to originalLetters
 		for(int i = 0; i < s.length(); i++) {
 			//get color based on distribution
@@ -88,7 +90,7 @@ public class Word {
 	 * and each value is the number of those letters required
 	 */
 	public HashMap<Letter, Integer> getNeededLettersHashed() {
-		HashMap<Letter, Integer> needed = new HashMap<Letter, Integer>();
+		HashMap<Letter, Integer> needed = new LinkedHashMap<Letter, Integer>();
 		for(int i = 0; i < originalLetters.length; i++) {
 			if(completedLetters[i])
 				continue;
@@ -3,6 +3,8 @@
  */
 package alphabetsoup.simulators.greedytaskallocation;
 
+import java.io.Serializable;
+
 import alphabetsoup.base.BucketbotTask;
 import alphabetsoup.framework.*;
 import alphabetsoup.simulators.greedytaskallocation.BucketbotGlobalResources.LetterStationPickupRequest;
@@ -12,8 +14,11 @@ import alphabetsoup.waypointgraph.*;
 /**
  * @author Chris Hazard
  */
-public class BucketbotAgent implements BucketbotManager, Updateable 
+public class BucketbotAgent implements BucketbotManager, Updateable, Schedulable, Serializable 
 {
+	private static final long serialVersionUID = 1L;
+	
+	SimulationWorldGreedyTaskAllocation simulationWorld = null;
 	BucketbotDriver bucketbot = null;
 	BucketbotGlobalResources manager = null;
 	Map map = null;
@@ -27,12 +32,39 @@ public class BucketbotAgent implements BucketbotManager, Updateable
 	Letter letterToDropOff = null;	//letter want to drop off
 	Waypoint reservedStorage = null;
 	
-	public BucketbotAgent(BucketbotDriver bucketbot) 
+	public BucketbotAgent(SimulationWorldGreedyTaskAllocation sw, BucketbotDriver bucketbot) 
 	{
+		simulationWorld = sw;
 		this.bucketbot = bucketbot;
 		bucketbot.manager = (BucketbotManager)this;
 	}
 	
+	/**Builds an agent which takes over the bucketbot and the current task of another agent, so that
+	 * a running simulation can switch to a different BucketbotAgent implementation.
+	 * Subclasses used with SimulationWorldGreedyTaskAllocation.setBucketbotAgentClass must provide
+	 * a public constructor with this signature.
+	 * @param previous agent to take over from, which should not be used afterward
+	 */
+	public BucketbotAgent(BucketbotAgent previous) 
+	{
+		this(previous.simulationWorld, previous.bucketbot);
+		manager = previous.manager;
+		map = previous.map;
+		waypointGraph = previous.waypointGraph;
+		reservedBucket = previous.reservedBucket;
+		targetLetterStation = previous.targetLetterStation;
+		targetWordStation = previous.targetWordStation;
+		targetWord = previous.targetWord;
+		targetLetter = previous.targetLetter;
+		letterToDropOff = previous.letterToDropOff;
+		reservedStorage = previous.reservedStorage;
+		bestDeliveryRequest = previous.bestDeliveryRequest;
+		bestTimeForDeliveryRequest = previous.bestTimeForDeliveryRequest;
+		bestLetterForDeliveryRequest = previous.bestLetterForDeliveryRequest;
+		bestDeliveryTaskStorageLocation = previous.bestDeliveryTaskStorageLocation;
+		deliver_mode = previous.deliver_mode;
+	}
+	
 	/**Optimistically estimates the time it will take this.bucketbot to reach Waypoint w
 	 * @param w
 	 * @return estimated travel time
@@ -77,6 +109,15 @@ public class BucketbotAgent implements BucketbotManager, Updateable
 		return wait_time;
 	}
 	
+	/**Gives the bucketbot a new task, noting it in the DecisionJournal if there is one
+	 * @param t task to assign
+	 */
+	protected void assignTask(BucketbotTask t) 
+	{
+		if(simulationWorld.decisionJournal != null) simulationWorld.decisionJournal.recordTask(this, t);
+		bucketbot.<BucketbotTask>assignTask(t);
+	}
+	
 	/**Tells bucketbot to store its current bucket at the specified waypoint
 	 * @param w
 	 */
@@ -95,7 +136,7 @@ public class BucketbotAgent implements BucketbotManager, Updateable
 			manager.usedBucketStorageLocations.put(reservedBucket, reservedStorage);
 		}
 		
-		bucketbot.<BucketbotTask>assignTask(BucketbotTask.createTaskSTORE_BUCKET(bucketbot.getBucket(), reservedStorage));
+		assignTask(BucketbotTask.createTaskSTORE_BUCKET(bucketbot.getBucket(), reservedStorage));
 	}
 	
 	/**Tells bucketbot to store its current bucket at the closest waypoint
@@ -131,16 +172,16 @@ public class BucketbotAgent implements BucketbotManager, Updateable
 		}
 		
 		//pick a random offset to move
-		float x = bucketbot.getX() + bucketbot.getRadius() * 2 * (SimulationWorld.rand.nextFloat() - .5f);
-		float y = bucketbot.getY() + bucketbot.getRadius() * 2 * (SimulationWorld.rand.nextFloat() - .5f);
+		float x = bucketbot.getX() + bucketbot.getRadius() * 2 * (simulationWorld.rand.nextFloat() - .5f);
+		float y = bucketbot.getY() + bucketbot.getRadius() * 2 * (simulationWorld.rand.nextFloat() - .5f);
 		
 		//don't get too close to the edge
 		int radii_from_edge = 8;
 		x = Math.max(x, radii_from_edge*bucketbot.getRadius());
-		x = Math.min(x, BucketbotDriver.map.getWidth() - radii_from_edge*bucketbot.getRadius());
+		x = Math.min(x, bucketbot.map.getWidth() - radii_from_edge*bucketbot.getRadius());
 		y = Math.max(y, radii_from_edge*bucketbot.getRadius());
-		y = Math.min(y, BucketbotDriver.map.getHeight() - radii_from_edge*bucketbot.getRadius());
-		bucketbot.<BucketbotTask>assignTask(BucketbotTask.createTaskMOVE(x, y));
+		y = Math.min(y, bucketbot.map.getHeight() - radii_from_edge*bucketbot.getRadius());
+		assignTask(BucketbotTask.createTaskMOVE(x, y));
 	}
 	
 	/**Based on the current situation, bucketbot needs to get letter, but doesn't have it.
@@ -150,6 +191,10 @@ public class BucketbotAgent implements BucketbotManager, Updateable
 	 */
 	public Bucket reserveBestLetterToPickUp() 
 	{
+		//a replayed simulation takes the decision from the journal instead of searching
+		DecisionJournal journal = simulationWorld.decisionJournal;
+		if(journal != null && journal.isReplaying()) return journal.replayLetterPickup(this);
+		
 		int bundle_size = map.getLetterStations().get(0).getBundleSize();
 			
 		//if have a current bucket
@@ -159,7 +204,7 @@ public class BucketbotAgent implements BucketbotManager, Updateable
 			if(b == null) b = reservedBucket;
 			
 			//if no room, get rid of the current bucket
-			if(b.getLetters().size() + bundle_size > b.getCapacity()) return null;
+			if(b.getLetters().size() + bundle_size > b.getCapacity()) return allocateLetterPickup(null, null);
 			
 			//current bucket works, so find closest letter station and best task
 			float closest_letter_station_time = Float.POSITIVE_INFINITY;
@@ -181,13 +226,7 @@ public class BucketbotAgent implements BucketbotManager, Updateable
 				}
 			}
 			
-			if(best_pickup == null) return null;
-
-			//allocate task!
-			targetLetter = best_pickup.letter;
-			targetLetterStation = best_pickup.station;
-			manager.availableLetters.remove(best_pickup); 
-			return b;
+			return allocateLetterPickup(best_pickup, b);
 		}
 		
 		//don't have a bucket
@@ -222,11 +261,23 @@ public class BucketbotAgent implements BucketbotManager, Updateable
 			}
 		}
 		
-		if(best_pickup == null) return null;
-		targetLetter = best_pickup.letter;
-		targetLetterStation = best_pickup.station;
-		manager.availableLetters.remove(best_pickup);
-		return best_bucket;
+		return allocateLetterPickup(best_pickup, best_bucket);
+	}
+	
+	/**Reserves the letter to pick up, once the best one has been chosen.
+	 * @param pickup letter to pick up, null if there is none
+	 * @param b Bucket to put the letter in
+	 * @return the Bucket that should be used, null if there is no letter to pick up
+	 */
+	Bucket allocateLetterPickup(LetterStationPickupRequest pickup, Bucket b) 
+	{
+		if(simulationWorld.decisionJournal != null) simulationWorld.decisionJournal.recordLetterPickup(this, pickup, b);
+		
+		if(pickup == null) return null;
+		targetLetter = pickup.letter;
+		targetLetterStation = pickup.station;
+		manager.availableLetters.remove(pickup);
+		return b;
 	}
 	
 	WordStationDeliveryRequest bestDeliveryRequest = null;
@@ -273,6 +324,10 @@ public class BucketbotAgent implements BucketbotManager, Updateable
 	 */
 	public Bucket getBestDeliveryTask() 
 	{	
+		//a replayed simulation takes the decision from the journal instead of searching
+		DecisionJournal journal = simulationWorld.decisionJournal;
+		if(journal != null && journal.isReplaying()) return journal.replayDeliveryTask(this);
+		
 		//find a letter to retrieve
 		WordStationDeliveryRequest best_task = null;
 		Bucket best_bucket = null;
@@ -345,13 +400,27 @@ public class BucketbotAgent implements BucketbotManager, Updateable
 
 		//if found no task, take the oldest
 		if(best_task == null) best_task = manager.openLetterRequests.get(0);
-		targetLetter = best_task.letter;
-		targetWord = best_task.word;
-		targetWordStation = best_task.station;
-		manager.openLetterRequests.remove(best_task);
-		letterToDropOff = best_letter;
-		bestDeliveryTaskStorageLocation = best_storage_location;
-		return best_bucket;
+		return allocateDeliveryTask(best_task, best_bucket, best_letter, best_storage_location);
+	}
+	
+	/**Reserves the letter delivery task, once the best one has been chosen.
+	 * @param task letter to deliver
+	 * @param b Bucket to deliver the letter from, null if no bucket can be used
+	 * @param letter Letter in the Bucket which will be delivered
+	 * @param storage_location where to store the current bucket first, null if it is to be kept or stored anywhere
+	 * @return the Bucket to be used to complete the task
+	 */
+	Bucket allocateDeliveryTask(WordStationDeliveryRequest task, Bucket b, Letter letter, Waypoint storage_location) 
+	{
+		if(simulationWorld.decisionJournal != null) simulationWorld.decisionJournal.recordDeliveryTask(this, task, b, letter, storage_location);
+		
+		targetLetter = task.letter;
+		targetWord = task.word;
+		targetWordStation = task.station;
+		manager.openLetterRequests.remove(task);
+		letterToDropOff = letter;
+		bestDeliveryTaskStorageLocation = storage_location;
+		return b;
 	}
 	
 	/**Frees the resources allocated to the bucketbot for its current letter delivery task
@@ -415,7 +484,7 @@ public class BucketbotAgent implements BucketbotManager, Updateable
 			}
 		}
 
-		bucketbot.<BucketbotTask>assignTask(BucketbotTask.createTaskTAKE_BUCKET_TO_WORD_STATION(
+		assignTask(BucketbotTask.createTaskTAKE_BUCKET_TO_WORD_STATION(
 				reservedBucket, letterToDropOff, targetWordStation, targetWord));
 		return true;
 	}
@@ -457,19 +526,32 @@ public class BucketbotAgent implements BucketbotManager, Updateable
 			}
 		}
 
-		bucketbot.<BucketbotTask>assignTask(BucketbotTask.createTaskTAKE_BUCKET_TO_LETTER_STATION(reservedBucket, targetLetter, targetLetterStation));
+		assignTask(BucketbotTask.createTaskTAKE_BUCKET_TO_LETTER_STATION(reservedBucket, targetLetter, targetLetterStation));
 		return true;
 	}
 	
 	boolean deliver_mode = true;
 	
+	/**Name the time spent choosing tasks is profiled under, separately from the update of the bucketbot asking for one */
+	public static final String planningSection = "BucketbotAgent planning";
+	
 	/**Bucketbots should call requestNewTask of their corresponding BucketbotAgent when they are idle and have no tasks
 	 */
 	public void requestNewTask(Bucketbot r) 
 	{
-		manager = SimulationWorldGreedyTaskAllocation.getSimulationWorld().bucketbotManager;
-		map = SimulationWorldGreedyTaskAllocation.getSimulationWorld().map;
-		waypointGraph = SimulationWorldGreedyTaskAllocation.getSimulationWorld().waypointGraph;
+		SimulationProfiler profiler = simulationWorld.getProfiler();
+		if(profiler != null) profiler.startSection();
+		chooseNewTask();
+		if(profiler != null) profiler.endSection(planningSection);
+	}
+	
+	/**Finds the best task for the bucketbot, or moves it out of the way if there is nothing to do.
+	 */
+	private void chooseNewTask() 
+	{
+		manager = simulationWorld.bucketbotManager;
+		map = simulationWorld.map;
+		waypointGraph = simulationWorld.waypointGraph;
 
 		if(deliver_mode) 
 		{
@@ -587,6 +669,14 @@ public class BucketbotAgent implements BucketbotManager, Updateable
 		return Double.POSITIVE_INFINITY;
 	}
 
+	/* (non-Javadoc)
+	 * @see alphabetsoup.framework.Schedulable#getNextUpdateTime(double)
+	 */
+	public double getNextUpdateTime(double cur_time) {
+		//update doesn't do anything
+		return Double.POSITIVE_INFINITY;
+	}
+
 	/* (non-Javadoc)
 	 * @see alphabetsoup.framework.Updateable#update(double, double)
 	 */
@@ -3,6 +3,7 @@
  */
 package alphabetsoup.simulators.greedytaskallocation;
 
+import java.io.Serializable;
 import java.util.*;
 
 import org.lwjgl.opengl.GL11;
@@ -17,13 +18,16 @@ import alphabetsoup.waypointgraph.Waypoint;
  * to dispense jobs to bucketbots.
  * @author Chris Hazard
  */
-public class BucketbotGlobalResources implements Updateable, Renderable {
+public class BucketbotGlobalResources implements Updateable, Schedulable, Renderable, Serializable {
+	private static final long serialVersionUID = 1L;
 
 	protected LinkedHashSet<Bucket> usedBuckets = new LinkedHashSet<Bucket>();
 	protected LinkedHashSet<Bucket> unusedBuckets = new LinkedHashSet<Bucket>();
+	protected SimulationWorldGreedyTaskAllocation simulationWorld;	//simulation the resources belong to
 
-	public BucketbotGlobalResources(Bucket [] buckets)
+	public BucketbotGlobalResources(SimulationWorldGreedyTaskAllocation sw, Bucket [] buckets)
 	{
+		simulationWorld = sw;
 		for(Bucket b : buckets) unusedBuckets.add(b);
 	}
 
@@ -32,8 +36,10 @@ public class BucketbotGlobalResources implements Updateable, Renderable {
 	 * @author Chris Hazard
 	 *
 	 */
-	public static class WordStationDeliveryRequest
+	public static class WordStationDeliveryRequest implements Serializable
 	{
+		private static final long serialVersionUID = 1L;
+		
 		public WordStationDeliveryRequest(Letter l, Word w, WordStation s)
 		{
 			letter = l;
@@ -50,8 +56,10 @@ public class BucketbotGlobalResources implements Updateable, Renderable {
 	 * @author Chris Hazard
 	 *
 	 */
-	public static class LetterStationPickupRequest
+	public static class LetterStationPickupRequest implements Serializable
 	{
+		private static final long serialVersionUID = 1L;
+		
 		public LetterStationPickupRequest(Letter l, LetterStation s)
 		{
 			letter = l;
@@ -64,8 +72,8 @@ public class BucketbotGlobalResources implements Updateable, Renderable {
 	List<WordStationDeliveryRequest> openLetterRequests = new ArrayList<WordStationDeliveryRequest>();
 	List<LetterStationPickupRequest> availableLetters = new ArrayList<LetterStationPickupRequest>();
 
-	HashSet<Waypoint> unusedBucketStorageLocations = new HashSet<Waypoint>();
-	HashMap<Bucket,Waypoint> usedBucketStorageLocations = new HashMap<Bucket,Waypoint>();
+	LinkedHashSet<Waypoint> unusedBucketStorageLocations = new LinkedHashSet<Waypoint>();
+	LinkedHashMap<Bucket,Waypoint> usedBucketStorageLocations = new LinkedHashMap<Bucket,Waypoint>();
 
 	/**
 	 * Adds a new valid currently used location to store buckets on the map
@@ -89,7 +97,7 @@ public class BucketbotGlobalResources implements Updateable, Renderable {
 	public void newWordAssignedToStation(Word w, WordStation s)
 	{
 		// THIS IS WHERE LETTERS ARE REQUESTED
-		MersenneTwisterFast rand = SimulationWorldGreedyTaskAllocation.rand;
+		MersenneTwisterFast rand = simulationWorld.rand;
 
 		for(Letter l : w.getOriginalLetters())
 		{
@@ -113,7 +121,7 @@ public class BucketbotGlobalResources implements Updateable, Renderable {
 	public void newLetterBundleAssignedToStation(Letter l, LetterStation s)
 	{
 		//MersenneTwisterFast rand = SimulationWorldGraphExample.rand;
-		MersenneTwisterFast rand = SimulationWorldGreedyTaskAllocation.rand;
+		MersenneTwisterFast rand = simulationWorld.rand;
 		if(availableLetters.size() > 0)
 		{
 			availableLetters.add(rand.nextInt(availableLetters.size()), new LetterStationPickupRequest(l, s));
@@ -132,6 +140,14 @@ public class BucketbotGlobalResources implements Updateable, Renderable {
 		return Double.POSITIVE_INFINITY;
 	}
 
+	/* (non-Javadoc)
+	 * @see alphabetsoup.framework.Schedulable#getNextUpdateTime(double)
+	 */
+	public double getNextUpdateTime(double cur_time) {
+		//update doesn't do anything
+		return Double.POSITIVE_INFINITY;
+	}
+
 	/* (non-Javadoc)
 	 * @see alphabetsoup.framework.Updateable#update(double, double)
 	 */
@@ -140,10 +156,11 @@ public class BucketbotGlobalResources implements Updateable, Renderable {
 	}
 
 	//routines which may be used to render the current used storage locations
-	private Disk disk = new Disk();
+	private transient Disk disk = null;	//created when first rendered, so nothing is loaded without graphics
 
 	public void render()
 	{
+		if(disk == null) disk = new Disk();
 		GL11.glLineWidth(1.0f);
 		GL11.glColor4ub((byte)0xFF, (byte)0x0, (byte)0x0, (byte)0xFF);
 		for(Bucket b : usedBucketStorageLocations.keySet())
@@ -153,7 +170,7 @@ public class BucketbotGlobalResources implements Updateable, Renderable {
 			//draw the center
 			GL11.glPushMatrix();
 			GL11.glTranslatef(w.getX(), w.getY(), 0.0f);
-			disk.draw(0.0f, SimulationWorldGreedyTaskAllocation.getSimulationWorld().map.getTolerance(), 10, 1);
+			disk.draw(0.0f, simulationWorld.map.getTolerance(), 10, 1);
 			GL11.glPopMatrix();
 
 			//draw the paths
@@ -168,7 +185,7 @@ public class BucketbotGlobalResources implements Updateable, Renderable {
 			//draw the center
 			GL11.glPushMatrix();
 			GL11.glTranslatef(w.getX(), w.getY(), 0.0f);
-			disk.draw(0.0f, SimulationWorldGreedyTaskAllocation.getSimulationWorld().map.getTolerance(), 10, 1);
+			disk.draw(0.0f, simulationWorld.map.getTolerance(), 10, 1);
 			GL11.glPopMatrix();
 		}
 	}
@@ -0,0 +1,605 @@
+/**
+ *
+ */
+package alphabetsoup.simulators.greedytaskallocation;
+
+import java.io.*;
+import java.util.*;
+
+import alphabetsoup.base.BucketbotTask;
+import alphabetsoup.framework.*;
+import alphabetsoup.simulators.greedytaskallocation.BucketbotGlobalResources.LetterStationPickupRequest;
+import alphabetsoup.simulators.greedytaskallocation.BucketbotGlobalResources.WordStationDeliveryRequest;
+import alphabetsoup.waypointgraph.Waypoint;
+
+/**DecisionJournal records a run of SimulationWorldGreedyTaskAllocation to a compact append-only file, so that
+ * the run can be reproduced later without rerunning it from the beginning.<br>
+ * The journal starts with a keyframe (a compressed snapshot of the whole simulation, see SimulationWorld.writeSnapshot),
+ * and more keyframes are added at a fixed interval of simulation time.  Between keyframes, it holds the decisions
+ * of the BucketbotAgents (the result of each search for a letter to deliver or pick up), each task given to a bucketbot
+ * (including the random moves made to get out of the way), each word taken by a word station, and each letter
+ * dispensed to a letter station.<br>
+ * A replay starts from the last keyframe before the requested time.  The BucketbotAgents then take their decisions
+ * from the journal rather than searching for them, which is where most of the time of a run goes, and everything
+ * else is checked against the journal as it happens, so that a replay which no longer matches the recorded run
+ * (for instance, because the code has changed) stops with an error instead of silently going somewhere else.
+ * Once the journal runs out, the simulation carries on as usual.
+ */
+public class DecisionJournal {
+
+	private static final int magicNumber = 0x414A4E4C;	//"AJNL"
+	private static final int version = 1;
+
+	//types of records in the journal
+	private static final int recordEnd = -1;	//not stored; marks the end of the journal while replaying
+	private static final int recordKeyframe = 0;
+	private static final int recordDeliveryTask = 1;
+	private static final int recordLetterPickup = 2;
+	private static final int recordTask = 3;
+	private static final int recordWordTaken = 4;
+	private static final int recordLetterDispensed = 5;
+	private static final int recordFinish = 6;	//time the recording was closed
+	private static final int maxRecordSize = 65536;	//largest record other than a keyframe
+
+	private String fileName;
+	private DataOutputStream out = null;	//set while recording
+	private DataInputStream in = null;		//set while replaying
+	private int nextRecord = recordEnd;		//type of the next record to be replayed
+
+	private double startTime;
+	private double keyframeInterval;
+	private double nextKeyframeTime;
+	private double lastStepTime;
+	private double finishTime = Double.POSITIVE_INFINITY;	//infinite if the recording was not closed
+	private double replayStopTime = Double.NaN;	//time replay is skipping ahead to, NaN when not skipping ahead
+
+	//simulation objects are stored in the journal by their index
+	private Bucketbot bucketbots[];
+	private Bucket buckets[];
+	private Waypoint waypoints[];
+	private WordStation wordStations[];
+	private LetterStation letterStations[];
+	private HashMap<Object, Integer> indices;
+
+	/**Starts recording a journal of the simulation.  The journal begins with a keyframe of the simulation as it is now.
+	 * @param sw simulation to record; its decisionJournal should be set to the new journal
+	 * @param file_name path of the journal file to write
+	 * @param keyframe_interval simulation time between keyframes, 0 for only the first one
+	 * @throws IOException if the journal could not be written
+	 */
+	public DecisionJournal(SimulationWorldGreedyTaskAllocation sw, String file_name, double keyframe_interval) throws IOException
+	{
+		fileName = file_name;
+		keyframeInterval = keyframe_interval;
+		startTime = sw.getCurrentTime();
+		lastStepTime = startTime;
+		nextKeyframeTime = startTime + keyframeInterval;
+		indexSimulation(sw);
+
+		out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file_name)));
+		out.writeInt(magicNumber);
+		out.writeInt(version);
+		writeKeyframe(sw);
+	}
+
+	/**Opens a journal to be replayed.
+	 * @param file_name path of the journal file to read
+	 * @throws IOException if the file could not be read or is not a journal
+	 */
+	public DecisionJournal(String file_name) throws IOException
+	{
+		fileName = file_name;
+		openForReading().close();
+	}
+
+	/**Replays the journal up to the given time.  The replay starts from the last keyframe at or before time_to_replay_to,
+	 * and stops at the end of the first step of the simulation at or after that time, so that it continues with exactly
+	 * the same steps as the recorded run.  The returned simulation keeps replaying the rest of the journal as it is updated.
+	 * @param time_to_replay_to absolute simulation time to skip ahead to; times before the start of the journal replay from the start
+	 * @return the simulation, at or just after time_to_replay_to, or at the end of the recorded run or of the journal if that comes first
+	 * @throws IOException if the journal could not be read
+	 */
+	public SimulationWorldGreedyTaskAllocation replay(double time_to_replay_to) throws IOException
+	{
+		//find the last keyframe before the time
+		DataInputStream stream = openForReading();
+		int keyframe = 0, num_keyframes = 0;
+		try {
+			for(int type = readType(stream); type != recordEnd; type = readType(stream))
+			{
+				if(type == recordFinish) {
+					finishTime = stream.readDouble();
+					break;
+				}
+				if(type != recordKeyframe) {
+					skipRecord(stream, type);
+					continue;
+				}
+				double time = stream.readDouble();
+				skipFully(stream, stream.readInt());
+				if(num_keyframes == 0) startTime = time;
+				if(time <= time_to_replay_to) keyframe = num_keyframes;
+				num_keyframes++;
+			}
+		}
+		catch(EOFException e) {
+			//the journal was cut off, such as by the recording run crashing.  Use what is there
+		}
+		finally {
+			stream.close();
+		}
+		if(num_keyframes == 0) throw new IOException("journal " + fileName + " has no keyframes");
+
+		//read up to that keyframe, and start the simulation from there
+		if(in != null) in.close();
+		in = openForReading();
+		SimulationWorldGreedyTaskAllocation sw = null;
+		for(int i = 0; i <= keyframe; )
+		{
+			int type = readType(in);
+			if(type != recordKeyframe) {
+				skipRecord(in, type);
+				continue;
+			}
+			in.readDouble();
+			byte snapshot[] = new byte[in.readInt()];
+			in.readFully(snapshot);
+			if(i == keyframe) sw = (SimulationWorldGreedyTaskAllocation)SimulationWorld.readSnapshot(new ByteArrayInputStream(snapshot));
+			i++;
+		}
+		indexSimulation(sw);
+		sw.decisionJournal = this;
+		advance();
+
+		//the final step may go a little past the time, rather than cut short a step the recorded run did not
+		replayStopTime = time_to_replay_to;
+		if(sw.getCurrentTime() < time_to_replay_to)
+			sw.updateUntil(finishTime);
+		replayStopTime = Double.NaN;
+		return sw;
+	}
+
+	/**
+	 * @return Returns the simulation time at which the journal starts.
+	 */
+	public double getStartTime()
+	{
+		return startTime;
+	}
+
+	/**
+	 * @return Returns true if the journal is being replayed and has not run out yet.
+	 */
+	public boolean isReplaying()
+	{
+		return nextRecord != recordEnd;
+	}
+
+	/**Called by the simulation at the end of each step, to write keyframes when recording.
+	 * @param sw simulation being recorded or replayed
+	 * @return false if a replay skipping ahead has reached the requested time or the end of the journal, so the simulation should stop, true otherwise
+	 */
+	public boolean stepFinished(SimulationWorldGreedyTaskAllocation sw)
+	{
+		if(out != null)
+		{
+			if(keyframeInterval > 0 && sw.getCurrentTime() >= nextKeyframeTime)
+			{
+				try {
+					writeKeyframe(sw);
+				} catch(IOException e) { stopRecording(e); }
+				while(nextKeyframeTime <= sw.getCurrentTime()) nextKeyframeTime += keyframeInterval;
+			}
+			lastStepTime = sw.getCurrentTime();
+			return true;
+		}
+		if(Double.isNaN(replayStopTime)) return true;
+		return sw.getCurrentTime() < replayStopTime && isReplaying();
+	}
+
+	/**Finishes the journal file.
+	 */
+	public void close()
+	{
+		try {
+			if(out != null) {
+				out.writeByte(recordFinish);
+				out.writeDouble(lastStepTime);
+				out.close();
+			}
+			if(in != null) in.close();
+		} catch(IOException e) { System.out.println("could not close decision journal " + fileName + ". " + e); }
+		out = null;
+		in = null;
+		nextRecord = recordEnd;
+	}
+
+	/**Records which letter delivery a BucketbotAgent decided on (see BucketbotAgent.getBestDeliveryTask)
+	 */
+	void recordDeliveryTask(BucketbotAgent agent, WordStationDeliveryRequest task, Bucket b, Letter letter, Waypoint storage_location)
+	{
+		if(out == null) return;
+		try {
+			out.writeByte(recordDeliveryTask);
+			writeIndex(indexOf(agent.bucketbot));
+			writeIndex(agent.manager.openLetterRequests.indexOf(task));
+			writeIndex(indexOf(b));
+			writeIndex(b == null ? -1 : indexInCollection(b.getLetters(), letter));
+			writeIndex(indexOf(storage_location));
+		} catch(IOException e) { stopRecording(e); }
+	}
+
+	/**Replays the letter delivery decision of a BucketbotAgent, in place of BucketbotAgent.getBestDeliveryTask
+	 * @return the Bucket to be used to complete the task
+	 */
+	Bucket replayDeliveryTask(BucketbotAgent agent)
+	{
+		try {
+			expectRecord(recordDeliveryTask, agent.bucketbot);
+			WordStationDeliveryRequest task = agent.manager.openLetterRequests.get(readIndex());
+			Bucket b = (Bucket)objectAt(buckets, readIndex());
+			int letter_index = readIndex();
+			Letter letter = (b == null || letter_index < 0) ? null : elementInCollection(b.getLetters(), letter_index);
+			Waypoint storage_location = (Waypoint)objectAt(waypoints, readIndex());
+			advance();
+			return agent.allocateDeliveryTask(task, b, letter, storage_location);
+		}
+		catch(IOException e) { throw diverged(agent.simulationWorld, e.toString()); }
+		catch(IndexOutOfBoundsException e) { throw diverged(agent.simulationWorld, "letter delivery no longer available"); }
+	}
+
+	/**Records which letter a BucketbotAgent decided to pick up (see BucketbotAgent.reserveBestLetterToPickUp)
+	 */
+	void recordLetterPickup(BucketbotAgent agent, LetterStationPickupRequest pickup, Bucket b)
+	{
+		if(out == null) return;
+		try {
+			out.writeByte(recordLetterPickup);
+			writeIndex(indexOf(agent.bucketbot));
+			writeIndex(pickup == null ? -1 : agent.manager.availableLetters.indexOf(pickup));
+			writeIndex(indexOf(b));
+		} catch(IOException e) { stopRecording(e); }
+	}
+
+	/**Replays the letter pickup decision of a BucketbotAgent, in place of BucketbotAgent.reserveBestLetterToPickUp
+	 * @return the Bucket that should be used, null if there is no letter to pick up
+	 */
+	Bucket replayLetterPickup(BucketbotAgent agent)
+	{
+		try {
+			expectRecord(recordLetterPickup, agent.bucketbot);
+			int pickup_index = readIndex();
+			LetterStationPickupRequest pickup = (pickup_index < 0) ? null : agent.manager.availableLetters.get(pickup_index);
+			Bucket b = (Bucket)objectAt(buckets, readIndex());
+			advance();
+			return agent.allocateLetterPickup(pickup, b);
+		}
+		catch(IOException e) { throw diverged(agent.simulationWorld, e.toString()); }
+		catch(IndexOutOfBoundsException e) { throw diverged(agent.simulationWorld, "letter pickup no longer available"); }
+	}
+
+	/**Records a task given to a bucketbot, or checks it against the journal when replaying
+	 */
+	void recordTask(BucketbotAgent agent, BucketbotTask t)
+	{
+		try {
+			if(out != null)
+			{
+				out.writeByte(recordTask);
+				writeIndex(indexOf(agent.bucketbot));
+				out.writeByte(t.getTaskType().ordinal());
+				writeIndex(indexOf(t.getBucket()));
+				if(t.getTaskType() == BucketbotTask.TaskType.MOVE) {
+					out.writeFloat(t.getDestinationX());
+					out.writeFloat(t.getDestinationY());
+				}
+			}
+			else if(isReplaying())
+			{
+				expectRecord(recordTask, agent.bucketbot);
+				boolean matches = (in.readByte() == t.getTaskType().ordinal());
+				matches &= (readIndex() == indexOf(t.getBucket()));
+				if(t.getTaskType() == BucketbotTask.TaskType.MOVE) {
+					matches &= (in.readFloat() == t.getDestinationX());
+					matches &= (in.readFloat() == t.getDestinationY());
+				}
+				if(!matches) throw diverged(agent.simulationWorld, "bucketbot given a different task " + t.getTaskType());
+				advance();
+			}
+		}
+		catch(IOException e) {
+			if(out != null) stopRecording(e);
+			else throw diverged(agent.simulationWorld, e.toString());
+		}
+	}
+
+	/**Records a word taken by a WordStation, or checks it against the journal when replaying
+	 */
+	void recordWordTaken(WordStation s, Word w)
+	{
+		Letter letters[] = w.getOriginalLetters();
+		try {
+			if(out != null)
+			{
+				out.writeByte(recordWordTaken);
+				writeIndex(indexOf(s));
+				writeIndex(letters.length);
+				for(Letter l : letters) writeLetter(l);
+			}
+			else if(isReplaying())
+			{
+				expectRecord(recordWordTaken, s);
+				boolean matches = (readIndex() == letters.length);
+				for(int i = 0; matches && i < letters.length; i++)
+					matches &= readLetterMatches(letters[i]);
+				if(!matches) throw diverged(null, "different word taken: " + w);
+				advance();
+			}
+		}
+		catch(IOException e) {
+			if(out != null) stopRecording(e);
+			else throw diverged(null, e.toString());
+		}
+	}
+
+	/**Records a letter dispensed to a LetterStation, or checks it against the journal when replaying
+	 */
+	void recordLetterDispensed(LetterStation s, Letter l)
+	{
+		try {
+			if(out != null)
+			{
+				out.writeByte(recordLetterDispensed);
+				writeIndex(indexOf(s));
+				writeLetter(l);
+			}
+			else if(isReplaying())
+			{
+				expectRecord(recordLetterDispensed, s);
+				if(!readLetterMatches(l)) throw diverged(null, "different letter dispensed: " + l);
+				advance();
+			}
+		}
+		catch(IOException e) {
+			if(out != null) stopRecording(e);
+			else throw diverged(null, e.toString());
+		}
+	}
+
+	/**Writes a keyframe of the simulation, and flushes the journal so that it is usable up to here
+	 */
+	private void writeKeyframe(SimulationWorldGreedyTaskAllocation sw) throws IOException
+	{
+		ByteArrayOutputStream snapshot = new ByteArrayOutputStream();
+		sw.writeSnapshot(snapshot);
+		out.writeByte(recordKeyframe);
+		out.writeDouble(sw.getCurrentTime());
+		out.writeInt(snapshot.size());
+		snapshot.writeTo(out);
+		out.flush();
+	}
+
+	/**Stops recording after the journal could not be written; the simulation itself carries on
+	 */
+	private void stopRecording(IOException e)
+	{
+		System.out.println("could not write decision journal " + fileName + ", stopped recording. " + e);
+		try {
+			out.close();
+		} catch(IOException f) { }
+		out = null;
+	}
+
+	/**Opens the journal file and checks its header
+	 */
+	private DataInputStream openForReading() throws IOException
+	{
+		DataInputStream stream = new DataInputStream(new BufferedInputStream(new FileInputStream(fileName)));
+		if(stream.readInt() != magicNumber || stream.readInt() != version) {
+			stream.close();
+			throw new IOException(fileName + " is not a decision journal from this version");
+		}
+		return stream;
+	}
+
+	/**Reads the type of the next record, recordEnd if there are no more
+	 */
+	private int readType(DataInputStream stream) throws IOException
+	{
+		int type = stream.read();
+		return (type < 0) ? recordEnd : type;
+	}
+
+	/**Skips over the rest of a record in a stream
+	 */
+	private void skipRecord(DataInputStream stream, int type) throws IOException
+	{
+		DataInputStream saved_in = in;
+		in = stream;
+		try {
+			switch(type) {
+			case recordKeyframe:
+				in.readDouble();
+				skipFully(in, in.readInt());
+				break;
+			case recordDeliveryTask:
+				for(int i = 0; i < 5; i++) readIndex();
+				break;
+			case recordLetterPickup:
+				for(int i = 0; i < 3; i++) readIndex();
+				break;
+			case recordTask:
+				readIndex();
+				int task_type = in.readByte();
+				readIndex();
+				if(task_type == BucketbotTask.TaskType.MOVE.ordinal()) {
+					in.readFloat();
+					in.readFloat();
+				}
+				break;
+			case recordWordTaken:
+				readIndex();
+				for(int i = readIndex(); i > 0; i--) readLetterMatches(null);
+				break;
+			case recordLetterDispensed:
+				readIndex();
+				readLetterMatches(null);
+				break;
+			case recordFinish:
+				in.readDouble();
+				break;
+			default:
+				throw new IOException("unknown record " + type + " in journal " + fileName);
+			}
+		}
+		finally {
+			in = saved_in;
+		}
+	}
+
+	/**Skips the given number of bytes, throwing EOFException if the stream ends first
+	 * (skipBytes may skip less than asked, or past the end of a file)
+	 */
+	private static void skipFully(DataInputStream stream, int num_bytes) throws IOException
+	{
+		byte buffer[] = new byte[Math.min(num_bytes, 8192)];
+		while(num_bytes > 0) {
+			int num_read = Math.min(num_bytes, buffer.length);
+			stream.readFully(buffer, 0, num_read);
+			num_bytes -= num_read;
+		}
+	}
+
+	/**Moves the replay on to the next record other than a keyframe.  A journal which was cut off in the
+	 * middle of a record ends at the last complete one.
+	 */
+	private void advance()
+	{
+		try {
+			nextRecord = readType(in);
+			while(nextRecord == recordKeyframe)
+			{
+				skipRecord(in, nextRecord);
+				nextRecord = readType(in);
+			}
+			if(nextRecord == recordFinish) nextRecord = recordEnd;
+			
+			//make sure the whole record is there before using it
+			if(nextRecord != recordEnd)
+			{
+				in.mark(maxRecordSize);
+				skipRecord(in, nextRecord);
+				in.reset();
+			}
+		}
+		catch(IOException e) {
+			nextRecord = recordEnd;
+		}
+		if(nextRecord == recordEnd) close();
+	}
+
+	/**Checks that the next record is of the expected type and is about the expected object
+	 */
+	private void expectRecord(int type, Object o) throws IOException
+	{
+		if(nextRecord != type || readIndex() != indexOf(o))
+			throw diverged(null, "expected record " + nextRecord + ", but simulation made record " + type + " for " + o);
+	}
+
+	/**Builds the exception thrown when a replay no longer matches the journal
+	 */
+	private IllegalStateException diverged(SimulationWorld sw, String reason)
+	{
+		String where = (sw == null) ? "" : " at time " + sw.getCurrentTime();
+		close();
+		return new IllegalStateException("replay of " + fileName + " no longer matches the journal" + where + ": " + reason);
+	}
+
+	/**Builds the tables used to store objects by their index
+	 */
+	private void indexSimulation(SimulationWorldGreedyTaskAllocation sw)
+	{
+		bucketbots = sw.getRobots();
+		buckets = sw.getBuckets();
+		waypoints = sw.waypointGraph.getWaypoints().toArray(new Waypoint[0]);
+		wordStations = sw.getWordStations();
+		letterStations = sw.getLetterStations();
+
+		indices = new HashMap<Object, Integer>();
+		for(Object table[] : new Object[][] { bucketbots, buckets, waypoints, wordStations, letterStations })
+			for(int i = 0; i < table.length; i++) indices.put(table[i], i);
+	}
+
+	/**Returns the index of a simulation object, -1 for null
+	 */
+	private int indexOf(Object o)
+	{
+		if(o == null) return -1;
+		return indices.get(o);
+	}
+
+	/**Returns the simulation object at an index, null for -1
+	 */
+	private static Object objectAt(Object table[], int index)
+	{
+		if(index < 0) return null;
+		return table[index];
+	}
+
+	private static <T> int indexInCollection(Collection<T> c, T element)
+	{
+		int i = 0;
+		for(T e : c) {
+			if(e == element) return i;
+			i++;
+		}
+		return -1;
+	}
+
+	private static <T> T elementInCollection(Collection<T> c, int index)
+	{
+		for(T e : c)
+			if(index-- == 0) return e;
+		throw new IndexOutOfBoundsException();
+	}
+
+	/**Writes an index of at least -1 in as few bytes as possible (7 bits per byte)
+	 */
+	private void writeIndex(int index) throws IOException
+	{
+		int value = index + 1;
+		while(value >= 0x80) {
+			out.writeByte((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.writeByte(value);
+	}
+
+	private int readIndex() throws IOException
+	{
+		int value = 0;
+		for(int shift = 0; ; shift += 7) {
+			int b = in.readUnsignedByte();
+			value |= (b & 0x7F) << shift;
+			if(b < 0x80) break;
+		}
+		return value - 1;
+	}
+
+	private void writeLetter(Letter l) throws IOException
+	{
+		out.writeChar(l.getLetter());
+		writeIndex(l.getColorID());
+	}
+
+	/**Reads a Letter written by writeLetter
+	 * @param l Letter to compare to, may be null
+	 * @return true if the Letter read is the same as l
+	 */
+	private boolean readLetterMatches(Letter l) throws IOException
+	{
+		char letter = in.readChar();
+		int color_id = readIndex();
+		return l != null && l.getLetter() == letter && l.getColorID() == color_id;
+	}
+}
@@ -3,11 +3,11 @@
  */
 package alphabetsoup.simulators.greedytaskallocation;
 
+import java.io.Serializable;
 import java.util.*;
 
 import alphabetsoup.framework.Letter;
 import alphabetsoup.framework.LetterStation;
-import alphabetsoup.framework.SimulationWorld;
 import alphabetsoup.framework.Updateable;
 import alphabetsoup.framework.Word;
 import alphabetsoup.framework.WordStation;
@@ -15,13 +15,22 @@ import alphabetsoup.framework.WordStation;
  * stations as they have space. The Letter Manager notified when a new Word is assigned to a WordStation.
  * @author Chris Hazard
  */
-public class LetterManager implements Updateable 
+public class LetterManager implements Updateable, Serializable 
 {
+	private static final long serialVersionUID = 1L;
+	
 	//letters that have been requested but haven't been dispensed
 	protected List<Letter> requiredLetters = new ArrayList<Letter>();
 	
 	//letters that have been dispensed that haven't yet been requested
 	protected List<Letter> surplusLetters = new ArrayList<Letter>();
+	
+	protected SimulationWorldGreedyTaskAllocation simulationWorld;	//simulation the letters are dispensed in
+	
+	public LetterManager(SimulationWorldGreedyTaskAllocation sw) 
+	{
+		simulationWorld = sw;
+	}
 
 	/* (non-Javadoc)
 	 * @see alphabetsoup.framework.Updateable#getNextEventTime(double)
@@ -56,7 +65,7 @@ public class LetterManager implements Updateable
 			//don't add a letter that's already been added
 			if(has_been_added) continue;
 			requiredLetters.add(l.clone());
-			int bundle_size = SimulationWorld.getSimulationWorld().letterStations[0].getBundleSize();
+			int bundle_size = simulationWorld.letterStations[0].getBundleSize();
 			for(int i = 1; i < bundle_size; i++)
 			{
 				surplusLetters.add(l.clone());
@@ -69,7 +78,7 @@ public class LetterManager implements Updateable
 	 */
 	public void update(double last_time, double cur_time) 
 	{
-		for(LetterStation s : SimulationWorldGreedyTaskAllocation.getSimulationWorld().getLetterStations()) 
+		for(LetterStation s : simulationWorld.getLetterStations()) 
 		{
 			//give the station letters if it needs them
 			if(s.getAssignedLetters().size() < s.getCapacity()) 
@@ -81,9 +90,10 @@ public class LetterManager implements Updateable
 				if(requiredLetters.size() > 0) 
 				{
 					Letter l = requiredLetters.remove(0);
+					if(simulationWorld.decisionJournal != null) simulationWorld.decisionJournal.recordLetterDispensed(s, l);
 					//add the letter to the station
 					s.addBundle(l);
-					SimulationWorldGreedyTaskAllocation.getSimulationWorld().bucketbotManager.newLetterBundleAssignedToStation(l, s);
+					simulationWorld.bucketbotManager.newLetterBundleAssignedToStation(l, s);
 				}
 			}
 		}
@@ -0,0 +1,348 @@
+/**
+ *
+ */
+package alphabetsoup.simulators.greedytaskallocation;
+
+import java.io.*;
+import java.text.DecimalFormat;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import alphabetsoup.base.SampleStatistics;
+import alphabetsoup.base.SummaryReport;
+import alphabetsoup.framework.SimulationWorld;
+
+/**ParameterSweep runs SimulationWorldGreedyTaskAllocation without user interface over a grid of parameter
+ * values, with several replications (random seeds) at each point of the grid, and writes one table with
+ * the mean and confidence interval of every value in the SummaryReport at each point.<br>
+ * The sweep is described by its own configuration file (see "sweep.config"):  base_configuration names the
+ * simulation configuration to start from, each sweep_&lt;parameter&gt;=v1,v2,... adds a dimension to the grid,
+ * and any other simulation parameter given overrides the base configuration at every point.
+ * Every point uses the same random seeds, so the points are compared using the same random words and layouts.
+ * The runs are independent SimulationWorlds, and are spread over a work-stealing thread pool.<br>
+ * If target_half_width is set, replications is only the least number of runs of each point: runs are added in
+ * rounds to each point until the confidence interval half width of stopping_metric is at most the target (or
+ * max_replications is reached), so points which converge quickly don't use as many runs as those which don't.
+ * Each round adds as many runs as the current variance says are needed, but never more than doubles the runs
+ * of a point.<br>
+ * Since run r of every point uses the same seed, the runs of two points can be paired.  The paired results file has
+ * the mean and confidence interval of the difference of every value between each point and the first, taken run by
+ * run over the seeds they have in common.  With common_random_numbers=1 the runs of each seed see the same words
+ * and inventory at every point, so the differences have much less variance than the values themselves.
+ */
+public class ParameterSweep {
+
+	//parameters in the sweep configuration which control the sweep itself
+	private static final List<String> sweepControlKeys = Arrays.asList(
+			"base_configuration", "replications", "first_random_seed", "sweep_threads", "confidence_level", "results_file",
+			"target_half_width", "stopping_metric", "max_replications", "paired_results_file");
+	private static final String sweepPrefix = "sweep_";
+
+	protected List<String> sweepKeys = new ArrayList<String>();		//parameters varied, in order of the table columns
+	protected List<Properties> points = new ArrayList<Properties>();	//full set of parameters at each point of the grid
+	protected int replications;
+	protected int firstRandomSeed;
+	protected int numThreads;
+	protected double confidenceLevel;
+	protected String resultsFileName;
+	protected String pairedResultsFileName;	//blank for no paired differences
+	protected double targetHalfWidth;	//0 to run exactly replications runs of each point
+	protected String stoppingMetric;
+	protected int maxReplications;
+
+	/**Builds the grid of parameters described by the sweep configuration.
+	 * @param sweep_params parameters of the sweep, as loaded from the sweep configuration file
+	 */
+	public ParameterSweep(Properties sweep_params)
+	{
+		Properties base = SimulationWorld.loadConfiguration(sweep_params.getProperty("base_configuration", "kiva.config"));
+		replications = Integer.parseInt(sweep_params.getProperty("replications", "10"));
+		firstRandomSeed = Integer.parseInt(sweep_params.getProperty("first_random_seed", "1"));
+		numThreads = Integer.parseInt(sweep_params.getProperty("sweep_threads", "0"));
+		if(numThreads <= 0) numThreads = Runtime.getRuntime().availableProcessors();
+		confidenceLevel = Double.parseDouble(sweep_params.getProperty("confidence_level", "0.95"));
+		resultsFileName = sweep_params.getProperty("results_file", "SweepResults.txt");
+		pairedResultsFileName = sweep_params.getProperty("paired_results_file", "SweepPairedDifferences.txt").trim();
+		targetHalfWidth = Double.parseDouble(sweep_params.getProperty("target_half_width", "0"));
+		stoppingMetric = sweep_params.getProperty("stopping_metric", "word completion rate");
+		maxReplications = Math.max(replications, Integer.parseInt(sweep_params.getProperty("max_replications", "100")));
+
+		//fixed overrides apply everywhere, and the sweep is always run without graphics
+		List<String> sweep_values = new ArrayList<String>();
+		for(String key : new TreeSet<String>(sweep_params.stringPropertyNames()))
+		{
+			if(sweepControlKeys.contains(key)) continue;
+			if(key.startsWith(sweepPrefix))
+			{
+				sweepKeys.add(key.substring(sweepPrefix.length()));
+				sweep_values.add(sweep_params.getProperty(key));
+			}
+			else base.setProperty(key, sweep_params.getProperty(key));
+		}
+		base.setProperty("useGUI", "0");
+
+		//build every combination, with the first parameter varying the slowest
+		points.add(base);
+		for(int i = 0; i < sweepKeys.size(); i++)
+		{
+			List<Properties> expanded = new ArrayList<Properties>();
+			for(Properties p : points)
+				for(String value : sweep_values.get(i).split(","))
+				{
+					Properties q = (Properties)p.clone();
+					q.setProperty(sweepKeys.get(i), value.trim());
+					expanded.add(q);
+				}
+			points = expanded;
+		}
+	}
+
+	/**Runs a single replication of the simulation.
+	 * @param params parameters of the simulation, including the random seed
+	 * @return values of the SummaryReport at the end of the run
+	 */
+	public static LinkedHashMap<String, Double> runReplication(Properties params)
+	{
+		SimulationWorldGreedyTaskAllocation sw = new SimulationWorldGreedyTaskAllocation(params);
+		sw.update(sw.getSimulationWarmupTime());
+		sw.resetStatistics();
+		sw.update(sw.getSimulationDuration());
+		return SummaryReport.generateReportValues(sw);
+	}
+
+	/**Runs every replication of every point in the grid, and writes the results table.
+	 */
+	public void run()
+	{
+		System.out.println("running " + points.size() + " parameter combinations x " + replications
+				+ ((targetHalfWidth > 0) ? " or more" : "") + " replications on " + numThreads + " threads");
+
+		//statistics and values of each run of each point, kept as the runs come in
+		LinkedHashSet<String> metrics = new LinkedHashSet<String>();
+		List<LinkedHashMap<String, SampleStatistics>> statistics = new ArrayList<LinkedHashMap<String, SampleStatistics>>();
+		List<List<LinkedHashMap<String, Double>>> run_values = new ArrayList<List<LinkedHashMap<String, Double>>>();
+		int new_runs[] = new int[points.size()];
+		for(int i = 0; i < points.size(); i++) {
+			statistics.add(new LinkedHashMap<String, SampleStatistics>());
+			run_values.add(new ArrayList<LinkedHashMap<String, Double>>());
+			new_runs[i] = replications;
+		}
+
+		ForkJoinPool pool = new ForkJoinPool(numThreads);
+		try {
+			while(true) {
+				runRound(pool, new_runs, metrics, statistics, run_values);
+				if(targetHalfWidth <= 0 || !getRunsNeeded(statistics, new_runs)) break;
+			}
+		}
+		finally {
+			pool.shutdown();
+		}
+
+		writeResults(metrics, statistics);
+		if(pairedResultsFileName.length() > 0 && points.size() > 1)
+			writePairedResults(metrics, run_values);
+	}
+
+	/**Runs the given number of new replications of each point, adding their values to the statistics of the point.
+	 * The replications of a point use the seeds after those it has already been run with, and their values
+	 * are added to the run values of the point in order of seed.
+	 */
+	protected void runRound(ForkJoinPool pool, int new_runs[], Collection<String> metrics, List<LinkedHashMap<String, SampleStatistics>> statistics,
+			List<List<LinkedHashMap<String, Double>>> run_values)
+	{
+		int total_runs = 0;
+		for(int n : new_runs) total_runs += n;
+		final int num_runs = total_runs;
+
+		//each run is its own task, so the pool can balance long and short runs
+		final AtomicInteger num_finished = new AtomicInteger(0);
+		List<Callable<LinkedHashMap<String, Double>>> tasks = new ArrayList<Callable<LinkedHashMap<String, Double>>>();
+		for(int i = 0; i < points.size(); i++)
+		{
+			int runs_done = getNumRuns(statistics.get(i));
+			for(int r = runs_done; r < runs_done + new_runs[i]; r++)
+			{
+				final Properties params = (Properties)points.get(i).clone();
+				params.setProperty("random_seed", Integer.toString(firstRandomSeed + r));
+				tasks.add(new Callable<LinkedHashMap<String, Double>>() {
+					public LinkedHashMap<String, Double> call() {
+						LinkedHashMap<String, Double> values = runReplication(params);
+						System.out.println("finished run " + num_finished.incrementAndGet() + " of " + num_runs);
+						return values;
+					}
+				});
+			}
+		}
+
+		List<Future<LinkedHashMap<String, Double>>> results = pool.invokeAll(tasks);
+
+		//gather statistics for each point
+		int task = 0;
+		for(int i = 0; i < points.size(); i++)
+		{
+			LinkedHashMap<String, SampleStatistics> point_statistics = statistics.get(i);
+			for(int r = 0; r < new_runs[i]; r++)
+			{
+				LinkedHashMap<String, Double> values;
+				try {
+					values = results.get(task++).get();
+				} catch(ExecutionException e) {
+					throw new RuntimeException(e.getCause());
+				} catch(InterruptedException e) {
+					throw new RuntimeException(e);
+				}
+				run_values.get(i).add(values);
+				for(String metric : values.keySet())
+				{
+					if(!point_statistics.containsKey(metric)) point_statistics.put(metric, new SampleStatistics());
+					point_statistics.get(metric).add(values.get(metric));
+					metrics.add(metric);
+				}
+			}
+		}
+	}
+
+	/**Decides how many more runs each point needs for the confidence interval half width of the stopping metric
+	 * to reach the target, estimated from its current variance.
+	 * @param new_runs filled in with the number of runs to add to each point
+	 * @return true if any point needs more runs
+	 */
+	protected boolean getRunsNeeded(List<LinkedHashMap<String, SampleStatistics>> statistics, int new_runs[])
+	{
+		boolean more_needed = false;
+		for(int i = 0; i < points.size(); i++)
+		{
+			new_runs[i] = 0;
+			SampleStatistics s = statistics.get(i).get(stoppingMetric);
+			if(s == null) throw new IllegalArgumentException("stopping_metric \"" + stoppingMetric + "\" is not in the summary report");
+
+			int n = s.getCount();
+			double half_width = s.getConfidenceHalfWidth(confidenceLevel);
+			if(half_width <= targetHalfWidth || n >= maxReplications) continue;
+
+			//the half width shrinks with the square root of the number of runs
+			int needed = (int)Math.ceil(n * (half_width / targetHalfWidth) * (half_width / targetHalfWidth));
+			new_runs[i] = Math.min(Math.min(Math.max(needed - n, 1), n), maxReplications - n);
+			more_needed = true;
+			System.out.println("combination " + (i+1) + ": " + stoppingMetric + " half width " + half_width
+					+ " after " + n + " runs, adding " + new_runs[i]);
+		}
+		return more_needed;
+	}
+
+	/**Gets the number of runs that have been made of a point.
+	 */
+	protected static int getNumRuns(LinkedHashMap<String, SampleStatistics> point_statistics)
+	{
+		for(SampleStatistics s : point_statistics.values()) return s.getCount();
+		return 0;
+	}
+
+	/**Writes the results table, one tab separated line per point of the grid.
+	 */
+	protected void writeResults(Collection<String> metrics, List<LinkedHashMap<String, SampleStatistics>> statistics)
+	{
+		DecimalFormat four_digits = new DecimalFormat("0.000");
+		PrintWriter outf;
+		try {
+			outf = new PrintWriter(new FileWriter(resultsFileName));
+		}
+		catch (Throwable e) {
+			System.out.println("Could not open file " + resultsFileName);
+			return;
+		}
+
+		String confidence = new DecimalFormat("0.##").format(confidenceLevel * 100) + "% ci";
+		StringBuilder header = new StringBuilder();
+		for(String key : sweepKeys) header.append(key).append('\t');
+		header.append("replications");
+		for(String metric : metrics)
+			header.append('\t').append(metric).append(" mean\t").append(metric).append(" ").append(confidence);
+		outf.println(header);
+
+		for(int i = 0; i < points.size(); i++)
+		{
+			StringBuilder line = new StringBuilder();
+			for(String key : sweepKeys) line.append(points.get(i).getProperty(key)).append('\t');
+			line.append(getNumRuns(statistics.get(i)));
+			for(String metric : metrics)
+			{
+				SampleStatistics s = statistics.get(i).get(metric);
+				if(s == null) {
+					line.append("\t\t");
+					continue;
+				}
+				line.append('\t').append(four_digits.format(s.getMean()));
+				line.append('\t').append(four_digits.format(s.getConfidenceHalfWidth(confidenceLevel)));
+			}
+			outf.println(line);
+		}
+		outf.close();
+	}
+
+	/**Writes the paired differences table, one tab separated line per point of the grid after the first,
+	 * with the mean and confidence interval of the difference of each value from the first point,
+	 * over the seeds both were run with.
+	 */
+	protected void writePairedResults(Collection<String> metrics, List<List<LinkedHashMap<String, Double>>> run_values)
+	{
+		DecimalFormat four_digits = new DecimalFormat("0.000");
+		PrintWriter outf;
+		try {
+			outf = new PrintWriter(new FileWriter(pairedResultsFileName));
+		}
+		catch (Throwable e) {
+			System.out.println("Could not open file " + pairedResultsFileName);
+			return;
+		}
+
+		String confidence = new DecimalFormat("0.##").format(confidenceLevel * 100) + "% ci";
+		StringBuilder header = new StringBuilder();
+		for(String key : sweepKeys) header.append(key).append('\t');
+		header.append("paired replications");
+		for(String metric : metrics)
+			header.append('\t').append(metric).append(" difference\t").append(metric).append(" ").append(confidence);
+		outf.println(header);
+
+		List<LinkedHashMap<String, Double>> first = run_values.get(0);
+		for(int i = 1; i < points.size(); i++)
+		{
+			//run r of each point has seed firstRandomSeed + r, so the common seeds are the first runs of both
+			List<LinkedHashMap<String, Double>> runs = run_values.get(i);
+			int num_pairs = Math.min(first.size(), runs.size());
+
+			StringBuilder line = new StringBuilder();
+			for(String key : sweepKeys) line.append(points.get(i).getProperty(key)).append('\t');
+			line.append(num_pairs);
+			for(String metric : metrics)
+			{
+				SampleStatistics s = new SampleStatistics();
+				for(int r = 0; r < num_pairs; r++)
+				{
+					Double a = first.get(r).get(metric);
+					Double b = runs.get(r).get(metric);
+					if(a != null && b != null) s.add(b - a);
+				}
+				if(s.getCount() == 0) {
+					line.append("\t\t");
+					continue;
+				}
+				line.append('\t').append(four_digits.format(s.getMean()));
+				line.append('\t').append(four_digits.format(s.getConfidenceHalfWidth(confidenceLevel)));
+			}
+			outf.println(line);
+		}
+		outf.close();
+	}
+
+	/**Launches a parameter sweep.
+	 * @param args optional name of the sweep configuration file, "sweep.config" by default
+	 */
+	public static void main(String[] args)
+	{
+		String sweep_file = (args.length > 0) ? args[0] : "sweep.config";
+		new ParameterSweep(SimulationWorld.loadConfiguration(sweep_file)).run();
+	}
+}
@@ -15,6 +15,8 @@ import alphabetsoup.waypointgraph.*;
  */
 public class SimulationWorldGreedyTaskAllocation extends SimulationWorld 
 {
+	private static final long serialVersionUID = 1L;
+	
 	private double simulationDuration = 0.0;
 	private double simulationWarmupTime = 0.0;
 	public LetterManager letterManager = null;
@@ -22,20 +24,25 @@ public class SimulationWorldGreedyTaskAllocation extends SimulationWorld
 	public BucketbotGlobalResources bucketbotManager = null; 	// THIS IS NOT THE INSTANCE OF CLASS BucketbotManager
 	public WaypointGraph waypointGraph = null;
 	public BucketbotAgent bucketbotagents[] = null;	// ONE BUCKET BOT HAS A BUCKET BOT AGEENT
+	public transient DecisionJournal decisionJournal = null;	//journal being recorded or replayed, if any
+	public transient TimeSeriesReport timeSeriesReport = null;	//statistics written as the simulation runs, if any
+	public transient SteadyStateDetector steadyStateDetector = null;	//ends the warmup once steady state is found, if used
 
-	private static SimulationWorldGreedyTaskAllocation simulationWorldGraphExample;
-	public static SimulationWorldGreedyTaskAllocation getSimulationWorld() 
+	public SimulationWorldGreedyTaskAllocation() 
 	{
-		return simulationWorldGraphExample;
+		this(loadConfiguration("kiva.config"));
 	}
 	
-	public SimulationWorldGreedyTaskAllocation() 
+	/**Builds a simulation from parameters which have already been loaded.
+	 * Each instance is independent of any other, so several may be run at once on separate threads.
+	 * @param parameters parameters of the simulation, as would be read from "kiva.config"
+	 */
+	public SimulationWorldGreedyTaskAllocation(Properties parameters) 
 	{
 		// SUPER CLASS DOES THE FOLLOWING:
 		// 1. INITIALIZE BUCKET, BUCKETBOT WORDSTATION, LETTERSTATION
 		// 2. INITIALIZE BUCKET CONTENT
-		super("kiva.config");
-		simulationWorldGraphExample = this;
+		super(parameters);
 		
 		float bucketbot_size = Float.parseFloat(params.getProperty("bucketbot_size"));
 		float bucket_size = Float.parseFloat(params.getProperty("bucket_size"));
@@ -53,7 +60,6 @@ public class SimulationWorldGreedyTaskAllocation extends SimulationWorld
 		float collision_penalty_time = Float.parseFloat( params.getProperty("collision_penalty_time"));
 		
 		usingGUI = (Integer.parseInt(params.getProperty("useGUI")) == 1);
-		String window_size[] = params.getProperty("window_size").split("x");
 		simulationDuration = Double.parseDouble(params.getProperty("simulation_duration"));
 		simulationWarmupTime = Double.parseDouble(params.getProperty("simulation_warmup_time"));
 		
@@ -61,25 +67,22 @@ public class SimulationWorldGreedyTaskAllocation extends SimulationWorld
 		// 1. CREATE ROOT NODE USING WIDTH AND HEIGHT
 		waypointGraph = new WaypointGraph(map.getWidth(), map.getHeight());
 		
-		//Set up base map to add things to
-		// CREATE A FRAME OF WIDTH AND HEIGHT AND PASS THIS OBJECT TO UI
-		if(usingGUI) RenderWindow.initializeUserInterface(Integer.parseInt(window_size[0]), Integer.parseInt(window_size[1]), this);
-		
-		//SET GLOBAL waypointGraph WHERE BucketbotDriver HAS TO TRAVEL ON. 
-		// THERE ARE MANY BUCKET BUCKET BOT DRIVER, BUT IT TRAVEL ON THE SAME ***WAYPOINTGRAPH***
-		BucketbotDriver.waypointGraph = waypointGraph;
-		BucketbotDriver.map = map;
-
 		//Create classes and agents, and add them to the map accordingly
         //////////////////////////////////////////////////////////////////////////////////////
 		// THIS IS WHERE DRIVER AGENT, DRIVER BOT MANAGER, BUCKET BOT DRIVER ASSIGNED
 		// BUCKETBOT AGENT CONTAINS BUCKET BOT DRIVER
 		//////////////////////////////////////////////////////////////////////////////////////
 		bucketbotagents = new BucketbotAgent[bucketbots.length];
+		String bucketbot_agent_class = params.getProperty("bucketbot_agent_class", BucketbotAgent.class.getName());
 		for(int i = 0; i < bucketbots.length; i++) 
 		{
-			bucketbots[i] = (Bucketbot) new BucketbotDriver( bucketbot_size, bucket_pickup_setdown_time, map.getMaxAcceleration(), map.getMaxVelocity(), collision_penalty_time);
-			bucketbotagents[i] = new BucketbotAgent((BucketbotDriver)bucketbots[i]);
+			// THERE ARE MANY BUCKET BOT DRIVERS, BUT THEY ALL TRAVEL ON THE SAME ***WAYPOINTGRAPH***
+			bucketbots[i] = (Bucketbot) new BucketbotDriver(this, waypointGraph, bucketbot_size, bucket_pickup_setdown_time, map.getMaxAcceleration(), map.getMaxVelocity(), collision_penalty_time);
+			((BucketbotDriver)bucketbots[i]).setEvadeRandom(getRandomStream(evasionStream, i));
+			try {
+				bucketbotagents[i] = (BucketbotAgent)Class.forName(bucketbot_agent_class)
+					.getConstructor(SimulationWorldGreedyTaskAllocation.class, BucketbotDriver.class).newInstance(this, bucketbots[i]);
+			} catch(Throwable e) { System.out.println("could not load class " + bucketbot_agent_class + ". " + e + ": " + e.getCause()); System.exit(1); }
 		}
 		
 		for(int i = 0; i < letterStations.length; i++)
@@ -89,7 +92,7 @@ public class SimulationWorldGreedyTaskAllocation extends SimulationWorld
 		
 		for(int i = 0; i < wordStations.length; i++)
 		{
-			wordStations[i] = (WordStation) new WordStationBase(station_size, bucket_to_letter_time, word_completion_time, word_station_capacity);
+			wordStations[i] = (WordStation) new WordStationBase(this, station_size, bucket_to_letter_time, word_completion_time, word_station_capacity);
 		}
 		
 		for(int i = 0; i < buckets.length; i++)
@@ -97,9 +100,9 @@ public class SimulationWorldGreedyTaskAllocation extends SimulationWorld
 			buckets[i] = (Bucket) new BucketBase(bucket_size, bucket_capacity);
 		}
 		
-		bucketbotManager	= new BucketbotGlobalResources(buckets);
-		letterManager	= new LetterManager();
-		wordManager		= (Updateable)new WordOrderManager();
+		bucketbotManager	= new BucketbotGlobalResources(this, buckets);
+		letterManager	= new LetterManager(this);
+		wordManager		= (Updateable)new WordOrderManager(this);
 
 		//generate waypoint graph
 		// PLACE LETTER STATION ON THE LEFT, WORD STATION ON THE RIGHT, BUCKETS IN THE RANDOM MIDDLE PLACES 
@@ -138,17 +141,83 @@ public class SimulationWorldGreedyTaskAllocation extends SimulationWorld
 		//System.exit(1);
 		*/
 		
+		if(usingGUI) initializeUserInterface();
+	}
+	
+	/**Opens the user interface and adds everything in the simulation to be rendered.
+	 * Called when the simulation is built, or after it is restored from a snapshot.
+	 */
+	public void initializeUserInterface() 
+	{
+		//Set up base map to add things to
+		// CREATE A FRAME OF WIDTH AND HEIGHT AND PASS THIS OBJECT TO UI
+		String window_size[] = params.getProperty("window_size").split("x");
+		RenderWindow.initializeUserInterface(Integer.parseInt(window_size[0]), Integer.parseInt(window_size[1]), this);
+		
 		//finish adding things to be rendered
-		if(usingGUI)
+		RenderWindow.addAdditionalDetailRender(new WordListRender((WordListBase)wordList));
+		RenderWindow.addLineRender(new MapRender(map));
+		for(LetterStation s : letterStations) RenderWindow.addSolidRender(new LetterStationRender((LetterStationBase)s));
+		for(WordStation s : wordStations) RenderWindow.addSolidRender(new WordStationRender((WordStationBase)s));
+		for(Bucket b : buckets) RenderWindow.addLineRender(new BucketRender((BucketBase)b));
+		for(Bucketbot r : bucketbots) RenderWindow.addLineRender(new BucketbotRender((BucketbotBase)r));
+		//RenderWindow.addSolidRender(bucketbotManager);
+		//RenderWindow.addSolidRender(new WaypointGraphRender(waypointGraph));
+	}
+	
+	/**
+	 * @return Returns the simulation duration, not including warmup.
+	 */
+	public double getSimulationDuration() 
+	{
+		return simulationDuration;
+	}
+	
+	/**
+	 * @return Returns the simulation warmup time.
+	 */
+	public double getSimulationWarmupTime() 
+	{
+		return simulationWarmupTime;
+	}
+	
+	/* (non-Javadoc)
+	 * @see alphabetsoup.framework.SimulationWorld#stepFinished()
+	 */
+	protected boolean stepFinished() 
+	{
+		if(timeSeriesReport != null) timeSeriesReport.stepFinished();
+		//the statistics have just been reset, so the warmup is over
+		if(steadyStateDetector != null && steadyStateDetector.stepFinished()) return false;
+		if(decisionJournal == null) return true;
+		return decisionJournal.stepFinished(this);
+	}
+	
+	/* (non-Javadoc)
+	 * @see alphabetsoup.framework.SimulationWorld#isStopRequested()
+	 */
+	public boolean isStopRequested() 
+	{
+		//an automatic warmup is over as soon as steady state is found
+		return steadyStateDetector != null && steadyStateDetector.isSteady();
+	}
+	
+	/**Replaces every BucketbotAgent with an instance of the given class, which takes over the bucketbot and
+	 * its current task.  Meant to be used on a fork of a running simulation, to see how a different
+	 * task allocation would do from the same state.
+	 * @param class_name name of a subclass of BucketbotAgent (or BucketbotAgent itself), which has a
+	 * public constructor taking the BucketbotAgent to replace
+	 */
+	public void setBucketbotAgentClass(String class_name) 
+	{
+		for(int i = 0; i < bucketbotagents.length; i++) 
 		{
-			RenderWindow.addAdditionalDetailRender(new WordListRender((WordListBase)wordList));
-			RenderWindow.addLineRender(new MapRender(map));
-			for(LetterStation s : letterStations) RenderWindow.addSolidRender(new LetterStationRender((LetterStationBase)s));
-			for(WordStation s : wordStations) RenderWindow.addSolidRender(new WordStationRender((WordStationBase)s));
-			for(Bucket b : buckets) RenderWindow.addLineRender(new BucketRender((BucketBase)b));
-			for(Bucketbot r : bucketbots) RenderWindow.addLineRender(new BucketbotRender((BucketbotBase)r));
-			//RenderWindow.addSolidRender(bucketbotManager);
-			//RenderWindow.addSolidRender(new WaypointGraphRender(waypointGraph));
+			BucketbotAgent agent = null;
+			try {
+				agent = (BucketbotAgent)Class.forName(class_name).getConstructor(BucketbotAgent.class).newInstance(bucketbotagents[i]);
+			} catch(Throwable e) { System.out.println("could not load class " + class_name + ". " + e + ": " + e.getCause()); System.exit(1); }
+			replaceUpdateable(bucketbotagents[i], agent);
+			bucketbotagents[i] = agent;
 		}
 	}
 	
@@ -157,22 +226,106 @@ public class SimulationWorldGreedyTaskAllocation extends SimulationWorld
 	 */
 	public static void main(String[] args) 
 	{
-		simulationWorld = new SimulationWorldGreedyTaskAllocation();
-		double warmup_time = ((SimulationWorldGreedyTaskAllocation)simulationWorld).simulationWarmupTime;
-		double simulation_time = ((SimulationWorldGreedyTaskAllocation)simulationWorld).simulationDuration; 
+		Properties params = loadConfiguration("kiva.config");
+		String snapshot_load_file = params.getProperty("snapshot_load_file", "");
+		String snapshot_save_file = params.getProperty("snapshot_save_file", "");
+		String journal_record_file = params.getProperty("journal_record_file", "");
+		String journal_replay_file = params.getProperty("journal_replay_file", "");
+		String time_series_file = params.getProperty("time_series_file", "");
+		
+		//the duration comes from the current configuration, in case the snapshot was made with a different one
+		double simulation_time = Double.parseDouble(params.getProperty("simulation_duration"));
+		
+		SimulationWorldGreedyTaskAllocation simulationWorld;
+		double simulation_finish_time;
+		if(journal_replay_file.length() > 0) 
+		{
+			//rerun a recorded simulation, skipping ahead to the requested time
+			DecisionJournal journal = null;
+			try {
+				journal = new DecisionJournal(journal_replay_file);
+				simulationWorld = journal.replay(Double.parseDouble(params.getProperty("journal_replay_time", "0")));
+			} catch(Throwable e) { System.out.println("could not replay journal " + journal_replay_file + ". " + e); System.exit(1); return; }
+			if(simulationWorld.isUsingGUI()) simulationWorld.initializeUserInterface();
+			simulation_finish_time = journal.getStartTime() + simulation_time;
+		}
+		else 
+		{
+			if(snapshot_load_file.length() > 0) 
+			{
+				//start from a simulation that has already been warmed up
+				try {
+					simulationWorld = (SimulationWorldGreedyTaskAllocation)loadSnapshot(snapshot_load_file);
+				} catch(Throwable e) { System.out.println("could not load snapshot " + snapshot_load_file + ". " + e); System.exit(1); return; }
+				if(simulationWorld.isUsingGUI()) simulationWorld.initializeUserInterface();
+			}
+			else 
+			{
+				simulationWorld = new SimulationWorldGreedyTaskAllocation(params);
+				double warmup_time = simulationWorld.simulationWarmupTime;
+				if(Integer.parseInt(params.getProperty("automatic_warmup", "0")) == 1) 
+				{
+					double batch_time = Double.parseDouble(params.getProperty("warmup_batch_time", "30"));
+					int min_batches = Integer.parseInt(params.getProperty("warmup_min_batches", "10"));
+					simulationWorld.steadyStateDetector = new SteadyStateDetector(simulationWorld, batch_time, min_batches);
+				}
+				if(simulationWorld.isUsingGUI()) RenderWindow.mainLoop(simulationWorld, warmup_time);
+				else simulationWorld.update(warmup_time);
+				
+				if(simulationWorld.steadyStateDetector != null) 
+				{
+					if(simulationWorld.steadyStateDetector.isSteady())
+						System.out.println("steady state found at " + simulationWorld.getStatisticsTime()
+								+ ", warmup cutoff " + simulationWorld.getWarmupCutoffTime());
+					else System.out.println("steady state not found within simulation_warmup_time of " + warmup_time);
+				}
+				
+				if(snapshot_save_file.length() > 0) 
+				{
+					try {
+						simulationWorld.saveSnapshot(snapshot_save_file);
+					} catch(Throwable e) { System.out.println("could not save snapshot " + snapshot_save_file + ". " + e); }
+				}
+			}
+			
+			//an automatic warmup has already reset the statistics when it found steady state
+			if(simulationWorld.steadyStateDetector == null || !simulationWorld.steadyStateDetector.isSteady())
+				simulationWorld.resetStatistics();
+			simulationWorld.steadyStateDetector = null;
+			simulation_finish_time = simulationWorld.getCurrentTime() + simulation_time;
+			if(journal_record_file.length() > 0) 
+			{
+				try {
+					double keyframe_interval = Double.parseDouble(params.getProperty("journal_keyframe_interval", "0"));
+					simulationWorld.decisionJournal = new DecisionJournal(simulationWorld, journal_record_file, keyframe_interval);
+				} catch(Throwable e) { System.out.println("could not record journal " + journal_record_file + ". " + e); }
+			}
+		}
+		
+		if(time_series_file.length() > 0) 
+		{
+			try {
+				double interval = Double.parseDouble(params.getProperty("time_series_interval", "60"));
+				simulationWorld.timeSeriesReport = new TimeSeriesReport(simulationWorld, time_series_file, interval);
+			} catch(Throwable e) { System.out.println("could not write time series " + time_series_file + ". " + e); }
+		}
+		
+		//profilers are not kept in snapshots, so restored simulations are profiled if this configuration asks for it
+		if(simulationWorld.getProfiler() == null && Integer.parseInt(params.getProperty("profile_updates", "0")) == 1)
+			simulationWorld.startProfiling(Double.parseDouble(params.getProperty("profile_log_interval", "10")));
+		
 		if(simulationWorld.isUsingGUI()) 
 		{
-			RenderWindow.mainLoop(simulationWorld, warmup_time);
-			simulationWorld.resetStatistics();
-			RenderWindow.mainLoop(simulationWorld, simulation_time);
+			RenderWindow.mainLoop(simulationWorld, simulation_finish_time - simulationWorld.getCurrentTime());
 			RenderWindow.destroyUserInterface();
 		}
 		else 
 		{
-			simulationWorld.update(warmup_time);
-			simulationWorld.resetStatistics();
-			simulationWorld.update(simulation_time);
+			simulationWorld.updateUntil(simulation_finish_time);
 		}
+		if(simulationWorld.decisionJournal != null) simulationWorld.decisionJournal.close();
+		if(simulationWorld.timeSeriesReport != null) simulationWorld.timeSeriesReport.close();
+		if(simulationWorld.getProfiler() != null) System.out.println(simulationWorld.getProfiler().getSummary());
 		SummaryReport.generateReport(simulationWorld);
 	}
 }
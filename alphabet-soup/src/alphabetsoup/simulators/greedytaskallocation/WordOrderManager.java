@@ -3,6 +3,8 @@
  */
 package alphabetsoup.simulators.greedytaskallocation;
 
+import java.io.Serializable;
+
 import alphabetsoup.framework.Updateable;
 import alphabetsoup.framework.Word;
 import alphabetsoup.framework.WordList;
@@ -12,7 +14,14 @@ import alphabetsoup.framework.WordStation;
  * stations as they have space.
  * @author Chris Hazard
  */
-public class WordOrderManager implements Updateable {
+public class WordOrderManager implements Updateable, Serializable {
+	private static final long serialVersionUID = 1L;
+
+	protected SimulationWorldGreedyTaskAllocation simulationWorld;	//simulation the words are dispensed in
+	
+	public WordOrderManager(SimulationWorldGreedyTaskAllocation sw) {
+		simulationWorld = sw;
+	}
 
 	/* (non-Javadoc)
 	 * @see alphabetsoup.framework.Updateable#getNextEventTime(double)
@@ -27,23 +36,24 @@ public class WordOrderManager implements Updateable {
 	public void update(double last_time, double cur_time) 
 	{
 		// GET THE LIST OF WORD IN SIMULATION WORLD
-		WordList wl = SimulationWorldGreedyTaskAllocation.getSimulationWorld().getWordList();
-		LetterManager lm = ((LetterManager)((SimulationWorldGreedyTaskAllocation)SimulationWorldGreedyTaskAllocation.getSimulationWorld()).letterManager);
+		WordList wl = simulationWorld.getWordList();
+		LetterManager lm = simulationWorld.letterManager;
 		
 		//see if all done
 		if(wl.getAvailableWords().size() == 0) return;
 		
 		// IF THERE ARE INCOMPLETE WORDS IN THE WORD LIST, ASSIGN THEM TO STATION THAT IS BELOW CAPACITY 
-		for(WordStation s : SimulationWorldGreedyTaskAllocation.getSimulationWorld().getWordStations()) 
+		for(WordStation s : simulationWorld.getWordStations()) 
 		{
 			//give the station words if it needs them
 			// ASSIGN WORD TO STATION THAT IS BELOW CAPACITY (NUMBER OF BOXES THAT A PICKER CAN HOLD
 			if(s.getAssignedWords().size() < s.getCapacity()) 
 			{
 				Word w = wl.takeAvailableWord(0);
+				if(simulationWorld.decisionJournal != null) simulationWorld.decisionJournal.recordWordTaken(s, w);
 				s.assignWord(w);					// ASSIGN WORD TO THE STATION THAT IS BELOW CAPACITY 
 				// WHY DO NEED TO ASSIGN TO BUCKET BOT MANAGER???
-				SimulationWorldGreedyTaskAllocation.getSimulationWorld().bucketbotManager.newWordAssignedToStation(w, s);
+				simulationWorld.bucketbotManager.newWordAssignedToStation(w, s);
 				lm.newWordAssignedToStation(s, w);
 			}
 			
@@ -45,7 +45,7 @@ public class BucketRender implements Renderable {
 		float x = 10.0f, y = 260.0f;
 		GL11.glColor4f(0.0f, 0.0f, 0.0f, 1.0f);
 
-Bucket buckets[] = SimulationWorld.getSimulationWorld().getBuckets();
+Bucket buckets[] = RenderWindow.getSimulationWorld().getBuckets();
 String task_string = "Bucket ";
 for(int i = 0; i < buckets.length; i++)
 	if(bucket == buckets[i]) {
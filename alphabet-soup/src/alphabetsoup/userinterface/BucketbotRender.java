@@ -126,8 +126,8 @@ public class BucketbotRender implements Renderable {
 			{
 				task_string += "  word:" + bucketbot.getCurrentTask().getTargetWord();
 			}
-			Bucket buckets[] = SimulationWorld.getSimulationWorld().getBuckets();
-			Bucketbot bucketbots[] = SimulationWorld.getSimulationWorld().bucketbots;
+			Bucket buckets[] = RenderWindow.getSimulationWorld().getBuckets();
+			Bucketbot bucketbots[] = RenderWindow.getSimulationWorld().bucketbots;
 
 			for(int i = 0; i < bucketbots.length; i++)
 			{
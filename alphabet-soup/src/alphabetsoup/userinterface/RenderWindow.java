@@ -99,6 +99,15 @@ public class RenderWindow {
 	//set to true if exiting the program
 	static public boolean exitRequested = false;
 
+	/**Returns the SimulationWorld being displayed.  There is only one window, so only one
+	 * SimulationWorld can be displayed at a time.
+	 * @return the SimulationWorld being displayed, null if the user interface hasn't been initialized
+	 */
+	static public SimulationWorld getSimulationWorld() 
+	{
+		return simulationWorld;
+	}
+
 	/**Sets up user interface, including display and fonts
 	 * @param width window width
 	 * @param height window height
@@ -396,7 +405,7 @@ public class RenderWindow {
 	}
 
 	/**Continually loops, processing user input and rendering the state of the simulation until
-	 * finished
+	 * finished, or until the simulation requests to stop
 	 * @param elapsed_time time to run the simulation.  if 0.0, then continually run
 	 */
 	static public void mainLoop(SimulationWorld sw, double elapsed_time) {
@@ -412,8 +421,8 @@ public class RenderWindow {
 		int cur_frame_time_index = 0;
 
 		long last_time = System.nanoTime();
-		//loop until exit, display closed, or simulation time is done running (if applicable)
-		while(!exitRequested && !Display.isCloseRequested()
+		//loop until exit, display closed, the simulation requests to stop, or simulation time is done running (if applicable)
+		while(!exitRequested && !Display.isCloseRequested() && !simulationWorld.isStopRequested()
 				&& (elapsed_time == 0.0 || simulation_end_time > simulationWorld.getCurrentTime()) ) {
 			readKeyboard();
 			readMouse();
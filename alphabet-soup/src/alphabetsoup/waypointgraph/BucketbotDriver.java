@@ -15,6 +15,8 @@ import alphabetsoup.framework.Map;
  */
 public class BucketbotDriver extends BucketbotBase 
 {
+	private static final long serialVersionUID = 1L;
+	
 	public float frustration = 0.0f;	//0.0->1.0 for maximal frustration
 	int stuckCount = 0;			//number of updates not able to move at all
 	static final double sqrt2 = Math.sqrt(2.0);
@@ -22,19 +24,46 @@ public class BucketbotDriver extends BucketbotBase
 	
 	public float evadeDistance = 0.0f;	//if see something within this distance, then evade!
 	
-	// THIS IS ASSIGNED IN SimulationWorldGreedyTaskAllocation
-	static public WaypointGraph waypointGraph = null;	//should be set to the global waypointGraph
-	static public Map map = null;	//should be set to the global map
+	public WaypointGraph waypointGraph = null;	//waypointGraph of the simulation the bucketbot is in
+	public Map map = null;	//map of the simulation the bucketbot is in
 
 	private Waypoint currentWaypoint = null;
+	private MersenneTwisterFast evadeRand = null;	//random numbers for evading, the simulation's own if not set
+	private transient ArrayList<Circle> visibleObjects = null;	//reused by getVisibleObjects, so looking around makes no garbage
 	
-	public BucketbotDriver(float bucketbot_radius, float bucket_pickup_setdown_time, 
+	public BucketbotDriver(SimulationWorld sw, WaypointGraph wg, float bucketbot_radius, float bucket_pickup_setdown_time, 
 						   float bucketbot_max_acceleration, float bucketbot_max_velocity, float collision_penalty_time) 
 	{
-		super(bucketbot_radius, bucket_pickup_setdown_time, bucketbot_max_acceleration, bucketbot_max_velocity, collision_penalty_time);	
+		super(sw, bucketbot_radius, bucket_pickup_setdown_time, bucketbot_max_acceleration, bucketbot_max_velocity, collision_penalty_time);	
+		waypointGraph = wg;
+		map = sw.getMap();
 		evadeDistance = 2.3f * getRadius();
 	}
 
+	/**Sets the random number generator used to decide how to evade, so that each bucketbot can have its own
+	 * (see SimulationWorld.getRandomStream).
+	 * @param rand random number generator
+	 */
+	public void setEvadeRandom(MersenneTwisterFast rand) 
+	{
+		evadeRand = rand;
+	}
+
+	/**Finds the bucketbots within a distance, and the buckets too if carrying one, including this bucketbot
+	 * and its own bucket.  The list returned is reused by the next call, so must not be kept.
+	 * @param distance how far to look
+	 * @return the bucketbots, followed by the buckets
+	 */
+	protected List<Circle> getVisibleObjects(float distance)
+	{
+		if(visibleObjects == null) visibleObjects = new ArrayList<Circle>();
+		visibleObjects.clear();
+		map.getBucketbotsWithinDistance(getX(), getY(), distance, null, visibleObjects);
+		if(getBucket() != null)
+			map.getBucketsWithinDistance(getX(), getY(), distance, null, visibleObjects);
+		return visibleObjects;
+	}
+
 	/* (non-Javadoc)
 	 * @see alphabetsoup.framework.Bucketbot#assignTask(alphabetsoup.base.BucketbotTask)
 	 */
@@ -100,6 +129,8 @@ public class BucketbotDriver extends BucketbotBase
 
 	public class BucketbotPickupBucket implements BucketbotState 
 	{
+		private static final long serialVersionUID = 1L;
+		
 		public String getStateName() { return "PickupBucket"; }
 		Bucket bucket;
 		public BucketbotPickupBucket(Bucket b) {
@@ -121,6 +152,8 @@ public class BucketbotDriver extends BucketbotBase
 	
 	public class BucketbotSetdownBucket implements BucketbotState 
 	{
+		private static final long serialVersionUID = 1L;
+		
 		public String getStateName() { return "SetdownBucket"; }
 		Waypoint waypoint = null;
 		public BucketbotSetdownBucket(Waypoint w) 
@@ -145,6 +178,8 @@ public class BucketbotDriver extends BucketbotBase
 	
 	public class BucketbotGetLetter implements BucketbotState 
 	{
+		private static final long serialVersionUID = 1L;
+		
 		public String getStateName() { return "GetLetter"; }
 		Letter letter;
 		LetterStation station;
@@ -189,6 +224,8 @@ public class BucketbotDriver extends BucketbotBase
 	
 	public class BucketbotPutLetter implements BucketbotState 
 	{
+		private static final long serialVersionUID = 1L;
+		
 		public String getStateName() { return "PutLetter"; }
 		Letter letter;
 		WordStation station;
@@ -260,13 +297,12 @@ public class BucketbotDriver extends BucketbotBase
 	 */
 	public float getBestEvadeDirection(float visible_distance) {
 		//get visible objects within the distance of the next planned update
-		Collection<Circle> visible_objects = map.getBucketbotsWithinDistance(getX(), getY(), visible_distance);
-		if(getBucket() != null)
-			visible_objects.addAll(map.getBucketsWithinDistance(getX(), getY(), visible_distance));
+		List<Circle> visible_objects = getVisibleObjects(visible_distance);
 	
 		List<CollideableObject> objects = new ArrayList<CollideableObject>();
 		//get object distances and directions
-		for(Circle c : visible_objects) {
+		for(int i = 0; i < visible_objects.size(); i++) {
+			Circle c = visible_objects.get(i);
 			if(c == this || c == getBucket())
 				continue;
 
@@ -323,12 +359,14 @@ public class BucketbotDriver extends BucketbotBase
 
 	public class BucketbotEvade implements BucketbotState 
 	{
+		private static final long serialVersionUID = 1L;
+		
 		public String getStateName() { return "Evade"; }
 		public void act(BucketbotBase self) 
 		{
 			setDrawBolded(true);
 			if(curTime < cruiseUntil) return;
-			MersenneTwisterFast rand = SimulationWorld.rand;
+			MersenneTwisterFast rand = (evadeRand != null) ? evadeRand : simulationWorld.rand;
 			
 			//if doing something else (stateQueue isn't empty), are trying to move to a new location,
 			// but there's another bucketbot at that location, then sit and wait most of the time
@@ -385,8 +423,8 @@ public class BucketbotDriver extends BucketbotBase
 	{
 		if(start == null || end == null) return null;
 
-		HashMap<Waypoint, WaypointSearchData> openLocations = new HashMap<Waypoint, WaypointSearchData>();
-		HashMap<Waypoint, WaypointSearchData> closedLocations = new HashMap<Waypoint, WaypointSearchData>();
+		HashMap<Waypoint, WaypointSearchData> openLocations = new LinkedHashMap<Waypoint, WaypointSearchData>();
+		HashMap<Waypoint, WaypointSearchData> closedLocations = new LinkedHashMap<Waypoint, WaypointSearchData>();
 		openLocations.put(start, new WaypointSearchData(0.0f, start.getDistance(end), start, null) );
 		
 		//don't move if already at destination
@@ -473,6 +511,8 @@ public class BucketbotDriver extends BucketbotBase
 	}
 	
 	public class BucketbotMove implements BucketbotState {
+		private static final long serialVersionUID = 1L;
+		
 		public String getStateName() { return "Move"; }
 		public float moveToX, moveToY;
 		public Waypoint destinationWaypoint;
@@ -505,9 +545,7 @@ public class BucketbotDriver extends BucketbotBase
 			distance_to_be_covered = Math.max(distance_to_be_covered, evadeDistance);
 			
 			//get visible objects within the distance of the next planned update
-			Collection<Circle> visible_objects = map.getBucketbotsWithinDistance(getX(), getY(), distance_to_be_covered);
-			if(self.getBucket() != null)
-				visible_objects.addAll(map.getBucketsWithinDistance(getX(), getY(), distance_to_be_covered));
+			List<Circle> visible_objects = getVisibleObjects(distance_to_be_covered);
 
 			/* uncomment out this code and have Quadtree::isValidMove always return true
 			 * to allow buckets and bucketbots to drive through each other
@@ -520,13 +558,16 @@ public class BucketbotDriver extends BucketbotBase
 			//don't want to do anything yet,
 			// unless something is now visible other than the bucketbot itself (and bucket if applicable)
 			// a collision occured (speed == 0)
+			//(a stopped bucketbot with nothing planned looks an infinite time ahead, which gives a NaN distance
+			// and finds nothing at all, not even itself, so it goes on to count as stuck)
 			if( ((getBucket() == null && visible_objects.size() == 1) 
 						|| (getBucket() != null && visible_objects.size() == 2) ) )
 				return false;
 	
 			//find closest object
 			float min_dist2 = Float.POSITIVE_INFINITY;	//minimum distance squared
-			for(Circle c : visible_objects) {
+			for(int i = 0; i < visible_objects.size(); i++) {
+				Circle c = visible_objects.get(i);
 				if(c == self || c == self.getBucket())
 					continue;
 				
@@ -17,7 +17,7 @@ public class GenerateWaypointGraph {
 	 */
 	static public HashMap<Waypoint, Bucket> initializeSparseRandomLayout(SimulationWorld sw, WaypointGraph waypointGraph) {
 		
-		HashMap<Waypoint, Bucket> bucket_storage_locations = new HashMap<Waypoint, Bucket>(); 
+		HashMap<Waypoint, Bucket> bucket_storage_locations = new LinkedHashMap<Waypoint, Bucket>(); 
 		
 		//create a list to place all circles in to test later on (to eliminate any overlap)
 		List<Circle> circles = new ArrayList<Circle>();
@@ -58,20 +58,22 @@ public class GenerateWaypointGraph {
 		float x_start = (sw.map.getWidth() - placeable_width + grid_link_width) / 2;
 		float y_start = (sw.map.getHeight() - placeable_height + grid_link_height) / 2;
 		
-		//create all the waypoint nodes for the grid
+		//create all the waypoint nodes for the grid, adding them to the graph together once they're made
 		Waypoint[][] grid = new Waypoint[height_count][width_count];
+		List<Waypoint> grid_waypoints = new ArrayList<Waypoint>(height_count * width_count);
 		for(int i = 0; i < height_count; i++) 
 		{
 			for(int j = 0; j < width_count; j++) 
 			{
 				grid[i][j] = new Waypoint(x_start + j*grid_link_width, y_start + i*grid_link_height, false);
-				waypointGraph.addWaypoint(grid[i][j]);
+				grid_waypoints.add(grid[i][j]);
 				
 				//as long as not a first node, connect back to previous spots
 				if(j > 0) grid[i][j].addBidirectionalPath(grid[i][j-1]);
 				if(i > 0) grid[i][j].addBidirectionalPath(grid[i-1][j]);
 			}
 		}
+		waypointGraph.addWaypoints(grid_waypoints);
 		
 		double max_connection_angle = Math.PI/3;
 		//connect edges of grid to stations
@@ -120,7 +122,8 @@ public class GenerateWaypointGraph {
 		}
 
 		
-		//put buckets in the spots between the grids, and add storage locations
+		//put buckets in the spots between the grids, and add storage locations (to the graph together afterward)
+		List<Waypoint> storage_waypoints = new ArrayList<Waypoint>();
 		int x_index = 1;
 		int y_index = 1;
 		for(Bucket b : sw.buckets) {
@@ -131,7 +134,7 @@ public class GenerateWaypointGraph {
 			
 			//add destinationWaypoint, and connect up to grid
 			Waypoint w = new Waypoint(b);
-			waypointGraph.addWaypoint(w);
+			storage_waypoints.add(w);
 			w.addBidirectionalPath(grid[y_index][x_index]);
 			w.addBidirectionalPath(grid[y_index][x_index+1]);
 			w.addBidirectionalPath(grid[y_index+1][x_index]);
@@ -152,7 +155,7 @@ public class GenerateWaypointGraph {
 		{	
 			//add destinationWaypoint, and connect up to grid
 			Waypoint w = new Waypoint(x_start + (x_index + 0.5f) * grid_link_width, y_start + (y_index + 0.5f) * grid_link_height, true);
-			waypointGraph.addWaypoint(w);
+			storage_waypoints.add(w);
 			w.addBidirectionalPath(grid[y_index][x_index]);
 			w.addBidirectionalPath(grid[y_index][x_index+1]);
 			w.addBidirectionalPath(grid[y_index+1][x_index]);
@@ -167,13 +170,14 @@ public class GenerateWaypointGraph {
 				y_index++;
 			}
 		}
+		waypointGraph.addWaypoints(storage_waypoints);
 	
 		//keep track of bucket bots to add
 		List<Circle> bucketbots_to_add = new ArrayList<Circle>();
 		for(Bucketbot r: sw.bucketbots)		bucketbots_to_add.add((Circle)r);
 		
 		//set up random locations for buckets and bucketbots, making sure they don't collide
-		MersenneTwisterFast rand = SimulationWorld.rand;
+		MersenneTwisterFast rand = sw.rand;
 		for(Circle c : bucketbots_to_add)
 		{
 			boolean collision;
@@ -193,8 +197,8 @@ public class GenerateWaypointGraph {
 		
 		//initialize bucketbots and buckets
 		//(once this is done, their positions may no longer be directly written to)
-		for(Bucket b : sw.buckets)			sw.map.addBucket(b);
-		for(Bucketbot r: sw.bucketbots)	sw.map.addRobot(r);
+		sw.map.addBuckets(Arrays.asList(sw.buckets));
+		sw.map.addRobots(Arrays.asList(sw.bucketbots));
 		
 		return bucket_storage_locations;
 	}
@@ -206,7 +210,7 @@ public class GenerateWaypointGraph {
 	static public HashMap<Waypoint, Bucket> initializeCompactRandomLayout(SimulationWorld sw, WaypointGraph waypointGraph) 
 	{
 		
-		HashMap<Waypoint, Bucket> bucket_storage_locations = new HashMap<Waypoint, Bucket>(); 
+		HashMap<Waypoint, Bucket> bucket_storage_locations = new LinkedHashMap<Waypoint, Bucket>(); 
 		
 		//create a list to place all circles in to test later on (to eliminate any overlap)
 		List<Circle> circles = new ArrayList<Circle>();
@@ -250,14 +254,15 @@ public class GenerateWaypointGraph {
 		
 		int bucket_block_length = 5;
 		
-		//create all the waypoint nodes for the grid
+		//create all the waypoint nodes for the grid, adding them to the graph together once they're made
 		Waypoint[][] grid = new Waypoint[height_count][width_count];
+		List<Waypoint> grid_waypoints = new ArrayList<Waypoint>(height_count * width_count);
 		for(int i = 0; i < height_count; i++) 
 		{
 			for(int j = 0; j < width_count; j++) 
 			{
 				grid[i][j] = new Waypoint(x_start + j*block_size, y_start + i*block_size, false);
-				waypointGraph.addWaypoint(grid[i][j]);
+				grid_waypoints.add(grid[i][j]);
 				
 				//connect horizontally
 				if(j > 0) { //don't connect if first node
@@ -304,6 +309,7 @@ public class GenerateWaypointGraph {
 				}
 			}
 		}
+		waypointGraph.addWaypoints(grid_waypoints);
 		
 		//put buckets on storage locations
 		ArrayList<Waypoint> storage_locations = new ArrayList<Waypoint>();
@@ -397,7 +403,7 @@ public class GenerateWaypointGraph {
 		for(Bucketbot r: sw.bucketbots)		bucketbots_to_add.add((Circle)r);
 		
 		//set up random locations for buckets and bucketbots, making sure they don't collide
-		MersenneTwisterFast rand = SimulationWorld.rand;
+		MersenneTwisterFast rand = sw.rand;
 		for(Circle c : bucketbots_to_add)
 		{
 			boolean collision;
@@ -417,8 +423,8 @@ public class GenerateWaypointGraph {
 		
 		//initialize bucketbots and buckets
 		//(once this is done, their positions may no longer be directly written to)
-		for(Bucket b : sw.buckets)			sw.map.addBucket(b);
-		for(Bucketbot r: sw.bucketbots)	sw.map.addRobot(r);
+		sw.map.addBuckets(Arrays.asList(sw.buckets));
+		sw.map.addRobots(Arrays.asList(sw.bucketbots));
 		return bucket_storage_locations;
 	}
 }
@@ -3,6 +3,7 @@
  */
 package alphabetsoup.waypointgraph;
 
+import java.io.*;
 import java.text.DecimalFormat;
 import java.util.*;
 
@@ -18,13 +19,14 @@ import alphabetsoup.framework.WordStation;
  * @author Chris Hazard
  */
 public class Waypoint extends Circle {
+	private static final long serialVersionUID = 1L;
 	
-	private HashMap<Waypoint, Float> paths = new HashMap<Waypoint, Float>();
+	private transient HashMap<Waypoint, Float> paths = new LinkedHashMap<Waypoint, Float>();	//kept in snapshots by WaypointGraph
 	private WordStation wordStation = null;
 	private LetterStation letterStation = null;
 	private Bucket bucket = null;
 	private boolean bucketStorageLocation = false;
-	private HashSet<Bucketbot> bucketbots = new HashSet<Bucketbot>();
+	private HashSet<Bucketbot> bucketbots = new LinkedHashSet<Bucketbot>();
 	
 	/**Constructs a destinationWaypoint based on a LetterStation
 	 * @param ls
@@ -66,6 +68,24 @@ public class Waypoint extends Circle {
 		bucketStorageLocation = bucket_storage_location;
 	}
 	
+	/**Gets the paths to other Waypoints along with their weights, so WaypointGraph can save and restore them.
+	 * @return HashMap with the Waypoints the paths lead to as keys, and the weights as values
+	 */
+	HashMap<Waypoint, Float> getPathWeights() 
+	{
+		//may be called while this Waypoint is still being restored from a snapshot
+		if(paths == null) paths = new LinkedHashMap<Waypoint, Float>();
+		return paths;
+	}
+	
+	/**Restores a Waypoint from a snapshot.  The paths are restored by WaypointGraph.
+	 */
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException 
+	{
+		in.defaultReadObject();
+		getPathWeights();
+	}
+	
 	/**Gets the list of paths to other Waypoints from this Waypoint
 	 * @return Set of Waypoints
 	 */
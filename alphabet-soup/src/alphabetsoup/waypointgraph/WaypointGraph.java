@@ -3,6 +3,7 @@
  */
 package alphabetsoup.waypointgraph;
 
+import java.io.*;
 import java.util.*;
 
 import alphabetsoup.framework.Bucket;
@@ -15,12 +16,13 @@ import alphabetsoup.framework.WordStation;
  * ways to reference and manage them.   
  * @author Chris Hazard
  */
-public class WaypointGraph {
+public class WaypointGraph implements Serializable {
+	private static final long serialVersionUID = 1L;
 
-	private HashSet<Waypoint> waypoints = new HashSet<Waypoint>();
-	private HashMap<LetterStation, Waypoint> letterStations = new HashMap<LetterStation, Waypoint>();
-	private HashMap<WordStation, Waypoint> wordStations = new HashMap<WordStation, Waypoint>();
-	private HashMap<Bucket, Waypoint> buckets = new HashMap<Bucket, Waypoint>();
+	private HashSet<Waypoint> waypoints = new LinkedHashSet<Waypoint>();
+	private HashMap<LetterStation, Waypoint> letterStations = new LinkedHashMap<LetterStation, Waypoint>();
+	private HashMap<WordStation, Waypoint> wordStations = new LinkedHashMap<WordStation, Waypoint>();
+	private HashMap<Bucket, Waypoint> buckets = new LinkedHashMap<Bucket, Waypoint>();
 	private Quadtree waypointQuadtree;
 	
 	public WaypointGraph(float map_width, float map_height) 
@@ -42,6 +44,21 @@ public class WaypointGraph {
 		if(w.getBucket() != null) buckets.put(w.getBucket(), w);
 	}
 	
+	/**Adds a batch of Waypoints to the Waypoint graph, as addWaypoint does for each in order,
+	 * but building the spatial index of the Waypoints once for all of them, which is much faster for large layouts.
+	 * @param new_waypoints Waypoints to add
+	 */
+	public void addWaypoints(List<Waypoint> new_waypoints) 
+	{
+		for(Waypoint w : new_waypoints) {
+			waypoints.add(w);
+			if(w.getLetterStation() != null) letterStations.put(w.getLetterStation(), w);
+			if(w.getWordStation() != null) wordStations.put(w.getWordStation(), w);
+			if(w.getBucket() != null) buckets.put(w.getBucket(), w);
+		}
+		waypointQuadtree.addCircleObjects(new_waypoints);
+	}
+	
 	/**Removes a Waypoint from the WaypointGraph, and decouples it from any associations,
 	 * such as Buckets, Stations, etc. 
 	 * @param w Waypoint to remove
@@ -142,6 +159,38 @@ public class WaypointGraph {
 		buckets.put(b, w);
 	}
 
+	/**Writes the WaypointGraph to a snapshot.  The paths of the Waypoints are written here, after all of
+	 * the Waypoints themselves, because writing them with each Waypoint would recursively write every
+	 * Waypoint reachable from the first, which overflows the stack on large graphs.
+	 */
+	private void writeObject(ObjectOutputStream out) throws IOException 
+	{
+		out.defaultWriteObject();
+		for(Waypoint w : waypoints) {
+			HashMap<Waypoint, Float> paths = w.getPathWeights();
+			out.writeInt(paths.size());
+			for(Waypoint p : paths.keySet()) {
+				out.writeObject(p);
+				out.writeFloat(paths.get(p));
+			}
+		}
+	}
+	
+	/**Restores the WaypointGraph from a snapshot, including the paths of each Waypoint.
+	 */
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException 
+	{
+		in.defaultReadObject();
+		for(Waypoint w : waypoints) {
+			HashMap<Waypoint, Float> paths = w.getPathWeights();
+			int num_paths = in.readInt();
+			for(int i = 0; i < num_paths; i++) {
+				Waypoint p = (Waypoint)in.readObject();
+				paths.put(p, in.readFloat());
+			}
+		}
+	}
+
 	/**
 	 * @return Returns the waypoints.
 	 */
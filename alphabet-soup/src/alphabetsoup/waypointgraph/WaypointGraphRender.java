@@ -4,6 +4,7 @@
 package alphabetsoup.waypointgraph;
 
 import alphabetsoup.framework.*;
+import alphabetsoup.userinterface.RenderWindow;
 import alphabetsoup.userinterface.Renderable;
 import org.lwjgl.opengl.GL11;
 import org.lwjgl.util.glu.Disk;
@@ -34,7 +35,7 @@ public class WaypointGraphRender implements Renderable {
 			//draw the center
 			GL11.glPushMatrix();
 			GL11.glTranslatef(w.getX(), w.getY(), 0.0f);
-			disk.draw(0.0f, SimulationWorld.getSimulationWorld().map.getTolerance()/2, 10, 1);
+			disk.draw(0.0f, RenderWindow.getSimulationWorld().map.getTolerance()/2, 10, 1);
 			GL11.glPopMatrix();
 
 			//draw the paths